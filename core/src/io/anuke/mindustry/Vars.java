@@ -144,6 +144,8 @@ public class Vars implements Loadable{
     public static Maps maps;
     public static WaveSpawner spawner;
     public static BlockIndexer indexer;
+    public static Targeting targeting;
+    public static Scheduler scheduler;
     public static Pathfinder pathfinder;
 
     public static Control control;
@@ -202,11 +204,13 @@ public class Vars implements Loadable{
         maps = new Maps();
         spawner = new WaveSpawner();
         indexer = new BlockIndexer();
+        targeting = new Targeting();
+        scheduler = new Scheduler();
         pathfinder = new Pathfinder();
 
         playerGroup = Entities.addGroup(Player.class).enableMapping();
         tileGroup = Entities.addGroup(TileEntity.class, false);
-        bulletGroup = Entities.addGroup(Bullet.class).enableMapping();
+        bulletGroup = Entities.addGroup(Bullet.class).enableMapping().setBroadphase(new SpatialHash(4));
         effectGroup = Entities.addGroup(EffectEntity.class, false);
         groundEffectGroup = Entities.addGroup(DrawTrait.class, false);
         puddleGroup = Entities.addGroup(Puddle.class).enableMapping();
@@ -215,7 +219,7 @@ public class Vars implements Loadable{
         unitGroups = new EntityGroup[Team.all.length];
 
         for(Team team : Team.all){
-            unitGroups[team.ordinal()] = Entities.addGroup(BaseUnit.class).enableMapping();
+            unitGroups[team.ordinal()] = Entities.addGroup(BaseUnit.class).enableMapping().setBroadphase(new SpatialHash(4));
         }
 
         for(EntityGroup<?> group : Entities.getAllGroups()){
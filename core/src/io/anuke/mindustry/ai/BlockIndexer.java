@@ -9,7 +9,6 @@ import io.anuke.mindustry.content.*;
 import io.anuke.mindustry.entities.type.*;
 import io.anuke.mindustry.game.EventType.*;
 import io.anuke.mindustry.game.*;
-import io.anuke.mindustry.game.Teams.*;
 import io.anuke.mindustry.type.*;
 import io.anuke.mindustry.world.*;
 import io.anuke.mindustry.world.blocks.*;
@@ -25,11 +24,20 @@ public class BlockIndexer{
 
     /** Set of all ores that are being scanned. */
     private final ObjectSet<Item> scanOres = new ObjectSet<>();
-    private final ObjectSet<Item> itemSet = new ObjectSet<>();
     /** Stores all ore quadtrants on the map. */
     private ObjectMap<Item, ObjectSet<Tile>> ores;
-    /** Tags all quadrants. */
-    private GridBits[] structQuadrants;
+    /** Number of buildings in each quadrant by team. A quadrant is occupied by a team if its count is positive. */
+    private int[][] structCounts = new int[Team.all.length][0];
+    /** Maps tile indices to the team their building is counted under, plus one. Zero if not counted. */
+    private byte[] structTeams = {};
+    /** Number of ore tiles in each quadrant by item ID. */
+    private int[][] oreCounts = {};
+    /** Maps tile indices to the ID of the ore they are counted as, plus one. Zero if not counted. */
+    private short[] oreTiles = {};
+    /** Positions of targetable buildings by team, bucketed by quadrant. */
+    private IntArray[][] buildings = new IntArray[Team.all.length][0];
+    /** Maps tile indices to the team their building is indexed under, plus one. Zero if not indexed. */
+    private byte[] buildingTeams = {};
     /** Stores all damaged tile entities by team. */
     private ObjectSet<Tile>[] damagedTiles = new ObjectSet[Team.all.length];
     /**All ores available on this map.*/
@@ -53,7 +61,8 @@ public class BlockIndexer{
                 }
             }
             process(event.tile);
-            updateQuadrant(event.tile);
+            updateBuilding(event.tile);
+            updateOre(event.tile);
         });
 
         Events.on(WorldLoadEvent.class, event -> {
@@ -70,19 +79,30 @@ public class BlockIndexer{
 
             typeMap.clear();
             allOres.clear();
-            ores = null;
+            ores = new ObjectMap<>();
 
-            //create bitset for each team type that contains each quadrant
-            structQuadrants = new GridBits[Team.all.length];
+            //initialize ore map with empty sets
+            for(Item item : scanOres){
+                ores.put(item, new ObjectSet<>());
+            }
+
+            //create counters for each team and ore that contain each quadrant
             for(int i = 0; i < Team.all.length; i++){
-                structQuadrants[i] = new GridBits(Mathf.ceil(world.width() / (float)quadrantSize), Mathf.ceil(world.height() / (float)quadrantSize));
+                structCounts[i] = new int[quadWidth() * quadHeight()];
+                buildings[i] = new IntArray[quadWidth() * quadHeight()];
             }
+            oreCounts = new int[content.items().size][quadWidth() * quadHeight()];
+            structTeams = new byte[world.width() * world.height()];
+            buildingTeams = new byte[world.width() * world.height()];
+            oreTiles = new short[world.width() * world.height()];
 
             for(int x = 0; x < world.width(); x++){
                 for(int y = 0; y < world.height(); y++){
                     Tile tile = world.tile(x, y);
 
                     process(tile);
+                    updateBuilding(tile);
+                    updateOre(tile);
 
                     if(tile.entity != null && tile.entity.damaged()){
                         notifyTileDamaged(tile.entity);
@@ -91,14 +111,6 @@ public class BlockIndexer{
                     if(tile.drop() != null) allOres.add(tile.drop());
                 }
             }
-
-            for(int x = 0; x < quadWidth(); x++){
-                for(int y = 0; y < quadHeight(); y++){
-                    updateQuadrant(world.tile(x * quadrantSize, y * quadrantSize));
-                }
-            }
-
-            scanOres();
         });
     }
 
@@ -162,29 +174,34 @@ public class BlockIndexer{
 
     public TileEntity findTile(Team team, float x, float y, float range, Predicate<Tile> pred){
         TileEntity closest = null;
-        float dst = 0;
+        float dst = range;
 
-        for(int rx = Math.max((int)((x - range) / tilesize / quadrantSize), 0); rx <= (int)((x + range) / tilesize / quadrantSize) && rx < quadWidth(); rx++){
-            for(int ry = Math.max((int)((y - range) / tilesize / quadrantSize), 0); ry <= (int)((y + range) / tilesize / quadrantSize) && ry < quadHeight(); ry++){
+        //building centers can be up to half a tile off their origin tile
+        int minx = Math.max((world.toTile(x - range) - 1) / quadrantSize, 0), maxx = Math.min((world.toTile(x + range) + 1) / quadrantSize, quadWidth() - 1);
+        int miny = Math.max((world.toTile(y - range) - 1) / quadrantSize, 0), maxy = Math.min((world.toTile(y + range) + 1) / quadrantSize, quadHeight() - 1);
+        IntArray[] buckets = buildings[team.ordinal()];
+        float quadWorld = quadrantSize * tilesize;
 
-                if(!getQuad(team, rx, ry)) continue;
+        for(int rx = minx; rx <= maxx; rx++){
+            for(int ry = miny; ry <= maxy; ry++){
+                IntArray bucket = buckets[rx + ry * quadWidth()];
 
-                for(int tx = rx * quadrantSize; tx < (rx + 1) * quadrantSize && tx < world.width(); tx++){
-                    for(int ty = ry * quadrantSize; ty < (ry + 1) * quadrantSize && ty < world.height(); ty++){
-                        Tile other = world.ltile(tx, ty);
+                if(!getQuad(team, rx, ry) || bucket == null) continue;
 
-                        if(other == null) continue;
+                //skip quadrants that can't contain anything closer than the current result
+                float cx = Mathf.clamp(x, rx * quadWorld - tilesize, (rx + 1) * quadWorld), cy = Mathf.clamp(y, ry * quadWorld - tilesize, (ry + 1) * quadWorld);
+                if(Mathf.dst(x, y, cx, cy) >= dst) continue;
 
-                        if(other.entity == null || other.getTeam() != team || !pred.test(other) || !other.block().targetable)
-                            continue;
+                for(int i = 0; i < bucket.size; i++){
+                    Tile other = world.tile(bucket.get(i));
+                    TileEntity e = other.entity;
 
-                        TileEntity e = other.entity;
+                    if(e == null) continue;
 
-                        float ndst = Mathf.dst(x, y, e.x, e.y);
-                        if(ndst < range && (closest == null || ndst < dst)){
-                            dst = ndst;
-                            closest = e;
-                        }
+                    float ndst = Mathf.dst(x, y, e.x, e.y);
+                    if(ndst < dst && other.getTeam() == team && other.block().targetable && pred.test(other)){
+                        dst = ndst;
+                        closest = e;
                     }
                 }
             }
@@ -235,74 +252,74 @@ public class BlockIndexer{
             }
             typeMap.put(tile.pos(), new TileIndex(tile.block().flags, tile.getTeam()));
         }
+    }
 
-        if(ores == null) return;
+    /** Updates the quadrant count of this tile's building, and moves it into the bucket of its current team if it is targetable. */
+    private void updateBuilding(Tile tile){
+        if(!isCurrent(tile)) return;
 
-        int quadrantX = tile.x / quadrantSize;
-        int quadrantY = tile.y / quadrantSize;
-        itemSet.clear();
+        int pos = tile.pos(), index = tile.x + tile.y * world.width();
+        int bucket = tile.x / quadrantSize + tile.y / quadrantSize * quadWidth();
+        int team = tile.entity != null && tile.block().targetable ? tile.getTeam().ordinal() + 1 : 0;
+        int struct = tile.entity != null ? tile.getTeam().ordinal() + 1 : 0;
 
-        Tile rounded = world.tile(Mathf.clamp(quadrantX * quadrantSize + quadrantSize / 2, 0, world.width() - 1),
-        Mathf.clamp(quadrantY * quadrantSize + quadrantSize / 2, 0, world.height() - 1));
+        if(structTeams[index] != struct){
+            if(structTeams[index] != 0) structCounts[structTeams[index] - 1][bucket]--;
+            if(struct != 0) structCounts[struct - 1][bucket]++;
+            structTeams[index] = (byte)struct;
+        }
 
-        //find all items that this quadrant contains
-        for(int x = quadrantX * quadrantSize; x < world.width() && x < (quadrantX + 1) * quadrantSize; x++){
-            for(int y = quadrantY * quadrantSize; y < world.height() && y < (quadrantY + 1) * quadrantSize; y++){
-                Tile result = world.tile(x, y);
-                if(result == null || result.drop() == null || !scanOres.contains(result.drop())) continue;
+        if(buildingTeams[index] == team) return;
 
-                itemSet.add(result.drop());
-            }
+        if(buildingTeams[index] != 0){
+            buildings[buildingTeams[index] - 1][bucket].removeValue(pos);
         }
 
-        //update quadrant at this position
-        for(Item item : scanOres){
-            ObjectSet<Tile> set = ores.get(item);
-
-            //update quadrant status depending on whether the item is in it
-            if(!itemSet.contains(item)){
-                set.remove(rounded);
-            }else{
-                set.add(rounded);
+        if(team != 0){
+            IntArray[] buckets = buildings[team - 1];
+            if(buckets[bucket] == null){
+                buckets[bucket] = new IntArray();
             }
+            buckets[bucket].add(pos);
         }
+
+        buildingTeams[index] = (byte)team;
     }
 
-    private void updateQuadrant(Tile tile){
-        if(structQuadrants == null) return;
+    /** Updates the ore counts of this tile's quadrant, adding or removing it from the ore positions when it changes. */
+    private void updateOre(Tile tile){
+        if(!isCurrent(tile)) return;
 
-        //this quadrant is now 'dirty', re-scan the whole thing
+        int index = tile.x + tile.y * world.width();
         int quadrantX = tile.x / quadrantSize;
         int quadrantY = tile.y / quadrantSize;
-        int index = quadrantX + quadrantY * quadWidth();
+        int bucket = quadrantX + quadrantY * quadWidth();
+        int ore = tile.drop() != null && scanOres.contains(tile.drop()) && tile.block() == Blocks.air ? tile.drop().id + 1 : 0;
 
-        for(Team team : Team.all){
-            TeamData data = state.teams.get(team);
+        if(oreTiles[index] == ore) return;
 
-            //fast-set this quadrant to 'occupied' if the tile just placed is already of this team
-            if(tile.getTeam() == data.team && tile.entity != null && tile.block().targetable){
-                structQuadrants[data.team.ordinal()].set(quadrantX, quadrantY);
-                continue; //no need to process futher
-            }
+        //make sure to clamp quadrant middle position, since it might go off bounds
+        Tile rounded = world.tile(Mathf.clamp(quadrantX * quadrantSize + quadrantSize / 2, 0, world.width() - 1),
+        Mathf.clamp(quadrantY * quadrantSize + quadrantSize / 2, 0, world.height() - 1));
 
-            structQuadrants[data.team.ordinal()].set(quadrantX, quadrantY, false);
+        if(oreTiles[index] != 0 && --oreCounts[oreTiles[index] - 1][bucket] == 0){
+            ores.get(content.item(oreTiles[index] - 1)).remove(rounded);
+        }
 
-            outer:
-            for(int x = quadrantX * quadrantSize; x < world.width() && x < (quadrantX + 1) * quadrantSize; x++){
-                for(int y = quadrantY * quadrantSize; y < world.height() && y < (quadrantY + 1) * quadrantSize; y++){
-                    Tile result = world.ltile(x, y);
-                    //when a targetable block is found, mark this quadrant as occupied and stop searching
-                    if(result.entity != null && result.getTeam() == data.team){
-                        structQuadrants[data.team.ordinal()].set(quadrantX, quadrantY);
-                        break outer;
-                    }
-                }
-            }
+        if(ore != 0 && oreCounts[ore - 1][bucket]++ == 0){
+            ores.get(tile.drop()).add(rounded);
         }
+
+        oreTiles[index] = (short)ore;
+    }
+
+    /** @return whether this tile belongs to the current world. Changes may be posted before a new world was loaded. */
+    private boolean isCurrent(Tile tile){
+        return world.tile(tile.x, tile.y) == tile && buildingTeams.length == world.width() * world.height();
     }
 
     private boolean getQuad(Team team, int quadrantX, int quadrantY){
-        return structQuadrants[team.ordinal()].get(quadrantX, quadrantY);
+        return structCounts[team.ordinal()][quadrantX + quadrantY * quadWidth()] > 0;
     }
 
     private int quadWidth(){
@@ -313,32 +330,6 @@ public class BlockIndexer{
         return Mathf.ceil(world.height() / (float)quadrantSize);
     }
 
-    private void scanOres(){
-        ores = new ObjectMap<>();
-
-        //initialize ore map with empty sets
-        for(Item item : scanOres){
-            ores.put(item, new ObjectSet<>());
-        }
-
-        for(int x = 0; x < world.width(); x++){
-            for(int y = 0; y < world.height(); y++){
-                int qx = (x / quadrantSize);
-                int qy = (y / quadrantSize);
-
-                Tile tile = world.tile(x, y);
-
-                //add position of quadrant to list when an ore is found
-                if(tile.drop() != null && scanOres.contains(tile.drop()) && tile.block() == Blocks.air){
-                    ores.get(tile.drop()).add(world.tile(
-                    //make sure to clamp quadrant middle position, since it might go off bounds
-                    Mathf.clamp(qx * quadrantSize + quadrantSize / 2, 0, world.width() - 1),
-                    Mathf.clamp(qy * quadrantSize + quadrantSize / 2, 0, world.height() - 1)));
-                }
-            }
-        }
-    }
-
     private class TileIndex{
         public final EnumSet<BlockFlag> flags;
         public final Team team;
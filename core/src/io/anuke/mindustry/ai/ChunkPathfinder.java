@@ -0,0 +1,397 @@
+package io.anuke.mindustry.ai;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.math.geom.Geometry;
+import io.anuke.arc.math.geom.Point2;
+import io.anuke.mindustry.world.Pos;
+import io.anuke.mindustry.world.Tile;
+
+import java.util.Arrays;
+
+import static io.anuke.mindustry.Vars.world;
+
+/**
+ * Finds ground paths between two specific tiles, without a flow field covering the whole map.
+ * The map is split into chunks. Every open stretch of a chunk border gets a portal tile, and the costs between the portals of a chunk are precalculated.
+ * Queries search the portal graph, and then refine the result into tiles one chunk at a time.
+ * Chunks are rebuilt lazily, the next time a query needs them after one of their tiles has changed.
+ * An instance covers the world that was loaded when it was created. It doesn't listen to any events, so its owner has to
+ * call {@link #updateTile(Tile)} when the passability of a tile changes.
+ */
+public class ChunkPathfinder{
+    /** Size of each chunk in tiles. Matches the quadrant size of the block indexer. */
+    public static final int chunkSize = 16;
+
+    private int width, height, chunksX, chunksY;
+    private Chunk[] chunks = {};
+
+    /** Weights of the last chunk search, indexed by local x + local y * chunkSize. */
+    private final float[] local = new float[chunkSize * chunkSize];
+    /** Direction of the tile each tile of the last chunk search was reached from, as an index into {@link Geometry#d4}. */
+    private final byte[] localParents = new byte[chunkSize * chunkSize];
+    private final IntQueue localFrontier = new IntQueue();
+
+    /** Portal graph search state. Nodes are global tile indices. */
+    private final IntFloatMap costs = new IntFloatMap();
+    private final IntIntMap cameFrom = new IntIntMap();
+    private final IntSet closed = new IntSet();
+    private final IntArray heapNodes = new IntArray();
+    private final FloatArray heapPriorities = new FloatArray();
+    private final FloatArray goalCosts = new FloatArray();
+    private final IntArray waypoints = new IntArray();
+
+    /** Creates a pathfinder for the world that is currently loaded. */
+    public ChunkPathfinder(){
+        reset();
+    }
+
+    /** Marks the chunks around this tile for rebuilding. Call when the passability of a tile changes. */
+    public void updateTile(Tile tile){
+        if(tile.x >= width || tile.y >= height) return;
+
+        int cx = tile.x / chunkSize, cy = tile.y / chunkSize;
+        int lx = tile.x % chunkSize, ly = tile.y % chunkSize;
+        markDirty(cx, cy);
+
+        //portals on the border are shared with the neighboring chunk
+        if(lx == 0) markDirty(cx - 1, cy);
+        if(lx == chunkSize - 1) markDirty(cx + 1, cy);
+        if(ly == 0) markDirty(cx, cy - 1);
+        if(ly == chunkSize - 1) markDirty(cx, cy + 1);
+    }
+
+    /**
+     * Finds a path between two tiles.
+     * @param out filled with the packed positions of every tile on the path, excluding the start and including the end.
+     * @return whether a path was found.
+     */
+    public boolean findPath(Tile start, Tile end, IntArray out){
+        out.clear();
+        if(start == null || end == null || !passable(end.x, end.y)) return false;
+        if(start == end) return true;
+
+        Chunk startChunk = chunkAt(start.x, start.y), endChunk = chunkAt(end.x, end.y);
+
+        //paths inside a single chunk don't need the portal graph, as long as they don't have to leave it
+        if(startChunk == endChunk){
+            search(startChunk, start.x, start.y);
+            if(local[startChunk.local(end.x, end.y)] < Float.MAX_VALUE){
+                trace(startChunk, end.x, end.y, out);
+                return true;
+            }
+        }
+
+        if(!searchPortals(start, startChunk, end, endChunk)) return false;
+
+        //refine the portal path into tiles, one chunk at a time
+        int x = start.x, y = start.y;
+        for(int i = 0; i < waypoints.size; i++){
+            int next = waypoints.get(i);
+            int nx = next % width, ny = next / width;
+
+            Chunk chunk = chunkAt(x, y);
+            if(chunk == chunkAt(nx, ny)){
+                search(chunk, x, y);
+                trace(chunk, nx, ny, out);
+            }else{
+                //crossing a border takes a single step
+                out.add(Pos.get(nx, ny));
+            }
+
+            x = nx;
+            y = ny;
+        }
+
+        return true;
+    }
+
+    /** @return amount of portals in all chunks that are currently built. */
+    public int portalCount(){
+        int count = 0;
+        for(Chunk chunk : chunks){
+            if(!chunk.dirty) count += chunk.portals.size;
+        }
+        return count;
+    }
+
+    /** Builds every chunk immediately, instead of when a query first needs them. */
+    public void buildAll(){
+        for(Chunk chunk : chunks){
+            if(chunk.dirty) rebuild(chunk);
+        }
+    }
+
+    private void reset(){
+        width = world.width();
+        height = world.height();
+        chunksX = (width + chunkSize - 1) / chunkSize;
+        chunksY = (height + chunkSize - 1) / chunkSize;
+        chunks = new Chunk[chunksX * chunksY];
+
+        for(int cx = 0; cx < chunksX; cx++){
+            for(int cy = 0; cy < chunksY; cy++){
+                Chunk chunk = new Chunk();
+                chunk.x = cx * chunkSize;
+                chunk.y = cy * chunkSize;
+                chunk.width = Math.min(chunkSize, width - chunk.x);
+                chunk.height = Math.min(chunkSize, height - chunk.y);
+                chunks[cx + cy * chunksX] = chunk;
+            }
+        }
+    }
+
+    private void markDirty(int cx, int cy){
+        if(cx >= 0 && cy >= 0 && cx < chunksX && cy < chunksY){
+            chunks[cx + cy * chunksX].dirty = true;
+        }
+    }
+
+    /** @return the chunk containing this tile, built if necessary. */
+    private Chunk chunkAt(int x, int y){
+        Chunk chunk = chunks[x / chunkSize + y / chunkSize * chunksX];
+        if(chunk.dirty){
+            rebuild(chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Searches the portal graph from the start tile to the end tile, using A* with the manhattan distance as heuristic.
+     * The resulting portals, followed by the end tile, are stored in {@link #waypoints}.
+     */
+    private boolean searchPortals(Tile start, Chunk startChunk, Tile end, Chunk endChunk){
+        costs.clear();
+        cameFrom.clear();
+        closed.clear();
+        heapNodes.clear();
+        heapPriorities.clear();
+        waypoints.clear();
+
+        //costs from the end tile to the portals of its chunk; paths are assumed to cost the same in both directions
+        search(endChunk, end.x, end.y);
+        goalCosts.clear();
+        for(int i = 0; i < endChunk.portals.size; i++){
+            goalCosts.add(local[endChunk.local(endChunk.portals.get(i) % width, endChunk.portals.get(i) / width)]);
+        }
+
+        search(startChunk, start.x, start.y);
+        for(int i = 0; i < startChunk.portals.size; i++){
+            int portal = startChunk.portals.get(i);
+            float cost = local[startChunk.local(portal % width, portal / width)];
+            if(cost < Float.MAX_VALUE && cost < costs.get(portal, Float.MAX_VALUE)){
+                costs.put(portal, cost);
+                cameFrom.put(portal, -1);
+                push(portal, cost + heuristic(portal, end));
+            }
+        }
+
+        float bestCost = Float.MAX_VALUE;
+        int bestPortal = -1;
+
+        while(heapNodes.size > 0){
+            float priority = heapPriorities.first();
+            int node = pop();
+
+            if(priority >= bestCost) break;
+            if(!closed.add(node)) continue;
+
+            float cost = costs.get(node, Float.MAX_VALUE);
+            Chunk chunk = chunkAt(node % width, node / width);
+            IntArray portals = chunk.portals;
+
+            for(int i = 0; i < portals.size; i++){
+                if(portals.get(i) != node) continue;
+
+                if(chunk == endChunk && goalCosts.get(i) < Float.MAX_VALUE && cost + goalCosts.get(i) < bestCost){
+                    bestCost = cost + goalCosts.get(i);
+                    bestPortal = node;
+                }
+
+                int partner = chunk.partners.get(i);
+                relax(partner, node, cost + world.rawTile(partner % width, partner / width).cost, end);
+
+                for(int j = 0; j < portals.size; j++){
+                    float edge = chunk.costs[i * portals.size + j];
+                    if(j != i && edge < Float.MAX_VALUE){
+                        relax(portals.get(j), node, cost + edge, end);
+                    }
+                }
+            }
+        }
+
+        if(bestPortal == -1) return false;
+
+        for(int node = bestPortal; node != -1; node = cameFrom.get(node, -1)){
+            waypoints.add(node);
+        }
+        waypoints.reverse();
+        waypoints.add(end.x + end.y * width);
+        return true;
+    }
+
+    private void relax(int node, int from, float cost, Tile end){
+        if(cost < costs.get(node, Float.MAX_VALUE)){
+            costs.put(node, cost);
+            cameFrom.put(node, from);
+            push(node, cost + heuristic(node, end));
+        }
+    }
+
+    private float heuristic(int node, Tile end){
+        return Math.abs(node % width - end.x) + Math.abs(node / width - end.y);
+    }
+
+    /** Calculates the cost of every tile in a chunk from a start tile, without leaving the chunk. */
+    private void search(Chunk chunk, int startX, int startY){
+        Arrays.fill(local, Float.MAX_VALUE);
+        localFrontier.clear();
+
+        int start = chunk.local(startX, startY);
+        local[start] = 0;
+        localFrontier.addFirst(start);
+
+        while(localFrontier.size > 0){
+            int index = localFrontier.removeLast();
+            float cost = local[index];
+            int lx = index % chunkSize, ly = index / chunkSize;
+
+            for(int d = 0; d < 4; d++){
+                Point2 point = Geometry.d4[d];
+                int nx = lx + point.x, ny = ly + point.y;
+                if(nx < 0 || ny < 0 || nx >= chunk.width || ny >= chunk.height || !passable(chunk.x + nx, chunk.y + ny)) continue;
+
+                int other = nx + ny * chunkSize;
+                float next = cost + world.rawTile(chunk.x + nx, chunk.y + ny).cost;
+                if(next < local[other]){
+                    local[other] = next;
+                    localParents[other] = (byte)((d + 2) % 4);
+                    localFrontier.addFirst(other);
+                }
+            }
+        }
+    }
+
+    /** Adds the path to a tile found by the last chunk search to the output, in order. */
+    private void trace(Chunk chunk, int x, int y, IntArray out){
+        int begin = out.size;
+        int index = chunk.local(x, y);
+
+        while(local[index] > 0){
+            int lx = index % chunkSize, ly = index / chunkSize;
+            out.add(Pos.get(chunk.x + lx, chunk.y + ly));
+
+            Point2 point = Geometry.d4[localParents[index]];
+            index = (lx + point.x) + (ly + point.y) * chunkSize;
+        }
+
+        //the tiles were added from the end
+        for(int i = 0; i < (out.size - begin) / 2; i++){
+            out.swap(begin + i, out.size - 1 - i);
+        }
+    }
+
+    private void rebuild(Chunk chunk){
+        chunk.dirty = false;
+        chunk.portals.clear();
+        chunk.partners.clear();
+
+        if(chunk.x > 0) scanBorder(chunk, chunk.x, chunk.y, 0, 1, chunk.height, -1, 0);
+        if(chunk.x + chunk.width < width) scanBorder(chunk, chunk.x + chunk.width - 1, chunk.y, 0, 1, chunk.height, 1, 0);
+        if(chunk.y > 0) scanBorder(chunk, chunk.x, chunk.y, 1, 0, chunk.width, 0, -1);
+        if(chunk.y + chunk.height < height) scanBorder(chunk, chunk.x, chunk.y + chunk.height - 1, 1, 0, chunk.width, 0, 1);
+
+        int amount = chunk.portals.size;
+        chunk.costs = new float[amount * amount];
+
+        for(int i = 0; i < amount; i++){
+            int portal = chunk.portals.get(i);
+            search(chunk, portal % width, portal / width);
+
+            for(int j = 0; j < amount; j++){
+                int other = chunk.portals.get(j);
+                chunk.costs[i * amount + j] = local[chunk.local(other % width, other / width)];
+            }
+        }
+    }
+
+    /**
+     * Adds a portal in the middle of every open stretch of a chunk border.
+     * The neighboring chunk scans the same border from its side, so it always ends up with the partner portals.
+     */
+    private void scanBorder(Chunk chunk, int x, int y, int stepX, int stepY, int length, int outX, int outY){
+        int begin = -1;
+        for(int i = 0; i <= length; i++){
+            int tx = x + stepX * i, ty = y + stepY * i;
+            boolean open = i < length && passable(tx, ty) && passable(tx + outX, ty + outY);
+
+            if(open && begin == -1){
+                begin = i;
+            }else if(!open && begin != -1){
+                int middle = (begin + i - 1) / 2;
+                int px = x + stepX * middle, py = y + stepY * middle;
+                chunk.portals.add(px + py * width);
+                chunk.partners.add(px + outX + (py + outY) * width);
+                begin = -1;
+            }
+        }
+    }
+
+    private boolean passable(int x, int y){
+        Tile tile = world.rawTile(x, y);
+        return !tile.solid() && tile.floor().drownTime <= 0;
+    }
+
+    private void push(int node, float priority){
+        heapNodes.add(node);
+        heapPriorities.add(priority);
+
+        int i = heapNodes.size - 1;
+        while(i > 0){
+            int parent = (i - 1) / 2;
+            if(heapPriorities.get(parent) <= heapPriorities.get(i)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private int pop(){
+        int result = heapNodes.first();
+        int last = heapNodes.size - 1;
+        swap(0, last);
+        heapNodes.pop();
+        heapPriorities.pop();
+
+        int i = 0;
+        while(true){
+            int left = i * 2 + 1, right = left + 1, smallest = i;
+            if(left < heapNodes.size && heapPriorities.get(left) < heapPriorities.get(smallest)) smallest = left;
+            if(right < heapNodes.size && heapPriorities.get(right) < heapPriorities.get(smallest)) smallest = right;
+            if(smallest == i) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+
+        return result;
+    }
+
+    private void swap(int a, int b){
+        heapNodes.swap(a, b);
+        heapPriorities.swap(a, b);
+    }
+
+    class Chunk{
+        /** Position of the bottom left tile, and size of this chunk. Chunks at the edge of the map may be smaller. */
+        int x, y, width, height;
+        boolean dirty = true;
+        /** Global tile indices of every portal in this chunk. A tile may appear twice if it is on a corner. */
+        IntArray portals = new IntArray();
+        /** Global tile indices of the tile on the other side of the border of each portal. */
+        IntArray partners = new IntArray();
+        /** Costs between each pair of portals, or Float.MAX_VALUE if one can't be reached from the other inside this chunk. */
+        float[] costs = {};
+
+        int local(int wx, int wy){
+            return (wx - x) + (wy - y) * chunkSize;
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package io.anuke.mindustry.ai;
 
+import io.anuke.arc.Core;
 import io.anuke.arc.Events;
 import io.anuke.arc.collection.IntArray;
 import io.anuke.arc.collection.IntQueue;
 import io.anuke.arc.math.geom.Geometry;
 import io.anuke.arc.math.geom.Point2;
+import io.anuke.arc.util.Log;
 import io.anuke.arc.util.Structs;
 import io.anuke.arc.util.Time;
 import io.anuke.mindustry.game.EventType.TileChangeEvent;
@@ -12,18 +14,43 @@ import io.anuke.mindustry.game.EventType.WorldLoadEvent;
 import io.anuke.mindustry.game.Team;
 import io.anuke.mindustry.game.Teams.TeamData;
 import io.anuke.mindustry.net.Net;
-import io.anuke.mindustry.world.Pos;
 import io.anuke.mindustry.world.Tile;
 import io.anuke.mindustry.world.meta.BlockFlag;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static io.anuke.mindustry.Vars.*;
 
+/**
+ * Flow fields towards enemy targets, used by ground units.
+ * When a tile changes, only the tiles whose weight was derived from it are recalculated, instead of the whole field.
+ * To make this possible, every tile remembers the neighbor it got its weight from.
+ * <p>
+ * Fields only depend on a per-team copy of tile costs, so they can optionally be calculated on a worker thread.
+ * In that case, tile changes are queued for the worker, and finished weights are published in a second buffer that units read from.
+ */
 public class Pathfinder{
     private static final long maxUpdate = Time.millisToNanos(4);
-    private PathData[] paths;
+    /** Time after which weights are published by the worker thread, even if the field has not converged yet. */
+    private static final long publishInterval = 100;
+    /** Time the worker thread waits for when there is nothing to do, in milliseconds. */
+    private static final long idleTime = 5;
+    /** Parent direction of tiles that have no parent, e.g. targets and unreachable tiles. */
+    private static final byte noParent = -1;
+    /** Costs of tiles that are targets and impassable tiles, respectively. */
+    private static final byte targetCost = -2, impassableCost = -1;
+
+    private volatile PathData[] paths;
     private IntArray blocked = new IntArray();
+    /** Tiles invalidated by the current repair. Only used by the thread that updates fields. */
+    private IntArray invalid = new IntArray();
+    /** Tile changes copied out of a team's queue by the worker thread. */
+    private IntArray applied = new IntArray();
+    private volatile Thread worker;
 
     public Pathfinder(){
+        Core.settings.defaults("pathfinderthread", false);
+
         Events.on(WorldLoadEvent.class, event -> clear());
         Events.on(TileChangeEvent.class, event -> {
             if(Net.client()) return;
@@ -46,19 +73,59 @@ public class Pathfinder{
     public void update(){
         if(Net.client() || paths == null) return;
 
+        setThreaded(Core.settings.getBool("pathfinderthread"));
+
+        //the worker thread does all the work
+        if(worker != null) return;
+
         for(Team team : Team.all){
             if(state.teams.isActive(team)){
-                updateFrontier(team, maxUpdate);
+                updateFrontier(paths[team.ordinal()], maxUpdate);
+            }
+        }
+    }
+
+    /**
+     * Starts or stops calculating flow fields on a worker thread.
+     * Stopping blocks until the worker is done with its current step.
+     */
+    public void setThreaded(boolean threaded){
+        if(threaded == (worker != null)) return;
+
+        if(threaded){
+            //units read from the published buffer from now on
+            for(PathData path : paths){
+                if(path.weights != null){
+                    publish(path);
+                }
+            }
+
+            worker = new Thread(this::run, "Pathfinder");
+            worker.setDaemon(true);
+            worker.start();
+        }else{
+            worker.interrupt();
+            try{
+                worker.join();
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+
+            for(PathData path : paths){
+                applyChanges(path);
+                path.published = null;
             }
         }
     }
 
     public Tile getTargetTile(Team team, Tile tile){
-        float[][] values = paths[team.ordinal()].weights;
+        PathData path = paths[team.ordinal()];
+        float[] values = path.values();
 
         if(values == null || tile == null) return tile;
 
-        float value = values[tile.x][tile.y];
+        float value = values[path.index(tile.x, tile.y)];
 
         Tile target = null;
         float tl = 0f;
@@ -68,11 +135,13 @@ public class Pathfinder{
             Tile other = world.tile(dx, dy);
             if(other == null) continue;
 
-            if(values[dx][dy] < value && (target == null || values[dx][dy] < tl) &&
+            float otherValue = values[path.index(dx, dy)];
+
+            if(otherValue < value && (target == null || otherValue < tl) &&
             !other.solid() && other.floor().drownTime <= 0 &&
             !(point.x != 0 && point.y != 0 && (world.solid(tile.x + point.x, tile.y) || world.solid(tile.x, tile.y + point.y)))){ //diagonal corner trap
                 target = other;
-                tl = values[dx][dy];
+                tl = otherValue;
             }
         }
 
@@ -82,130 +151,310 @@ public class Pathfinder{
     }
 
     public float getValueforTeam(Team team, int x, int y){
-        return paths == null || paths[team.ordinal()].weights == null || team.ordinal() >= paths.length ? 0 : Structs.inBounds(x, y, paths[team.ordinal()].weights) ? paths[team.ordinal()].weights[x][y] : 0;
+        if(paths == null || team.ordinal() >= paths.length || paths[team.ordinal()].values() == null) return 0;
+        PathData path = paths[team.ordinal()];
+        return Structs.inBounds(x, y, path.width, path.height) ? path.values()[path.index(x, y)] : 0;
+    }
+
+    /** @return amount of tiles waiting to be processed in the flow field of this team. */
+    public int getFrontierSize(Team team){
+        return paths == null ? 0 : paths[team.ordinal()].frontier.size;
+    }
+
+    /** @return time in milliseconds that the flow field of this team took to converge after it last changed, or -1 if it never changed. */
+    public long getConvergenceTime(Team team){
+        return paths == null ? -1 : paths[team.ordinal()].convergenceTime;
+    }
+
+    /** @return whether the flow field of this team has no pending changes, and units see its final weights. */
+    public boolean isConverged(Team team){
+        if(paths == null) return true;
+        PathData path = paths[team.ordinal()];
+        return path.pending.get() == 0 && path.frontier.isEmpty() && (worker == null || !path.unpublished);
     }
 
     private boolean passable(Tile tile, Team team){
         return (!tile.solid()) || (tile.breakable() && (tile.getTeam() != team));
     }
 
+    private boolean isTarget(Tile tile, Team team){
+        return state.teams.areEnemies(tile.getTeam(), team) && tile.block().flags.contains(BlockFlag.target);
+    }
+
+    /** @return the cost of a tile as seen by the flow field of a team. */
+    private byte cost(Tile tile, Team team){
+        return isTarget(tile, team) ? targetCost : !passable(tile, team) ? impassableCost : tile.cost;
+    }
+
     /**
-     * Clears the frontier, increments the search and sets up all flow sources.
+     * Repairs the flow field around a changed tile, or queues the change for the worker thread.
      * This only occurs for active teams.
      */
     private void update(Tile tile, Team team){
         //make sure team exists
-        if(paths != null && paths[team.ordinal()] != null && paths[team.ordinal()].weights != null && Structs.inBounds(tile.x, tile.y, paths[team.ordinal()].weights)){
-            PathData path = paths[team.ordinal()];
+        if(paths == null || paths[team.ordinal()] == null || paths[team.ordinal()].weights == null) return;
 
-            if(path.weights[tile.x][tile.y] <= 0.1f){
-                //this was a previous target
-                path.frontier.clear();
-            }else if(!path.frontier.isEmpty()){
-                return;
+        PathData path = paths[team.ordinal()];
+        if(!Structs.inBounds(tile.x, tile.y, path.width, path.height)) return;
+
+        int index = path.index(tile.x, tile.y);
+        byte cost = cost(tile, team);
+
+        if(worker != null){
+            synchronized(path.changes){
+                path.changes.add(index);
+                path.changes.add(cost);
             }
+            path.pending.incrementAndGet();
+        }else{
+            apply(path, index, cost);
+        }
+    }
+
+    /** Applies all changes queued for the worker thread. */
+    private void applyChanges(PathData path){
+        if(path.weights == null) return;
+
+        applied.clear();
+        synchronized(path.changes){
+            applied.addAll(path.changes);
+            path.changes.clear();
+        }
+
+        for(int i = 0; i < applied.size; i += 2){
+            apply(path, applied.get(i), (byte)applied.get(i + 1));
+        }
+        path.pending.addAndGet(-applied.size / 2);
+    }
 
-            //impassable tiles have a weight of float.max
-            if(!passable(tile, team)){
-                path.weights[tile.x][tile.y] = Float.MAX_VALUE;
+    private void apply(PathData path, int index, byte cost){
+        //most changes, e.g. placing a conveyor, don't affect the flow field at all
+        if(path.costs[index] == cost) return;
+        path.costs[index] = cost;
+
+        if(path.dirtyTime == 0){
+            path.dirtyTime = Time.millis();
+        }
+
+        //the cost or passability of this tile may have changed, so everything that depends on it is recalculated
+        invalidate(path, index);
+
+        if(cost == targetCost){
+            path.weights[index] = 0;
+            path.frontier.addFirst(index);
+        }
+    }
+
+    /**
+     * Removes the weight of a tile and every tile that got its weight through it.
+     * The valid tiles around this region are added to the frontier, so that it gets filled again.
+     */
+    private void invalidate(PathData path, int start){
+        invalid.clear();
+        invalid.add(start);
+        path.weights[start] = Float.MAX_VALUE;
+        path.parents[start] = noParent;
+        path.unpublished = true;
+
+        for(int i = 0; i < invalid.size; i++){
+            int index = invalid.get(i);
+            int x = index % path.width, y = index / path.width;
+
+            for(int d = 0; d < 4; d++){
+                Point2 point = Geometry.d4[d];
+                int dx = x + point.x, dy = y + point.y;
+                if(!Structs.inBounds(dx, dy, path.width, path.height)) continue;
+
+                int other = path.index(dx, dy);
+                //children point back at this tile, which is in the opposite direction
+                if(path.parents[other] == (d + 2) % 4 && path.weights[other] < Float.MAX_VALUE){
+                    path.weights[other] = Float.MAX_VALUE;
+                    path.parents[other] = noParent;
+                    invalid.add(other);
+                }
             }
+        }
 
-            //increment search, clear frontier
-            path.search++;
-            path.frontier.clear();
-            path.lastSearchTime = Time.millis();
+        for(int i = 0; i < invalid.size; i++){
+            int index = invalid.get(i);
+            int x = index % path.width, y = index / path.width;
 
-            //add all targets to the frontier
-            for(Tile other : indexer.getEnemy(team, BlockFlag.target)){
-                path.weights[other.x][other.y] = 0;
-                path.searches[other.x][other.y] = (short)path.search;
-                path.frontier.addFirst(other.pos());
+            for(Point2 point : Geometry.d4){
+                int dx = x + point.x, dy = y + point.y;
+                if(Structs.inBounds(dx, dy, path.width, path.height) && path.weights[path.index(dx, dy)] < Float.MAX_VALUE){
+                    path.frontier.addFirst(path.index(dx, dy));
+                }
             }
         }
     }
 
-    private void createFor(Team team){
+    private PathData createFor(Team team){
         PathData path = new PathData();
-        path.weights = new float[world.width()][world.height()];
-        path.searches = new short[world.width()][world.height()];
-        path.search++;
+        path.width = world.width();
+        path.height = world.height();
+        path.weights = new float[path.width * path.height];
+        path.parents = new byte[path.width * path.height];
+        path.costs = new byte[path.width * path.height];
         path.frontier.ensureCapacity((world.width() + world.height()) * 3);
 
-        paths[team.ordinal()] = path;
-
         for(int x = 0; x < world.width(); x++){
             for(int y = 0; y < world.height(); y++){
                 Tile tile = world.tile(x, y);
+                int index = path.index(x, y);
+
+                path.parents[index] = noParent;
+                path.costs[index] = cost(tile, team);
 
-                if(state.teams.areEnemies(tile.getTeam(), team)
-                && tile.block().flags.contains(BlockFlag.target)){
-                    path.frontier.addFirst(tile.pos());
-                    path.weights[x][y] = 0;
-                    path.searches[x][y] = (short)path.search;
+                if(path.costs[index] == targetCost){
+                    path.frontier.addFirst(index);
+                    path.weights[index] = 0;
                 }else{
-                    path.weights[x][y] = Float.MAX_VALUE;
+                    path.weights[index] = Float.MAX_VALUE;
                 }
             }
         }
 
-        updateFrontier(team, -1);
+        updateFrontier(path, -1);
+
+        if(worker != null){
+            publish(path);
+        }
+
+        return path;
     }
 
-    private void updateFrontier(Team team, long nsToRun){
-        PathData path = paths[team.ordinal()];
+    /** Propagates weights from the frontier. This only reads the cost copy of the field, so it is safe to call from any thread. */
+    private void updateFrontier(PathData path, long nsToRun){
+        if(path.weights == null) return;
 
         long start = Time.nanos();
 
         while(path.frontier.size > 0 && (nsToRun < 0 || Time.timeSinceNanos(start) <= nsToRun)){
-            Tile tile = world.tile(path.frontier.removeLast());
-            if(tile == null || path.weights == null) return; //something went horribly wrong, bail
-            float cost = path.weights[tile.x][tile.y];
+            int index = path.frontier.removeLast();
+            float cost = path.weights[index];
 
             //pathfinding overflowed for some reason, time to bail. the next block update will handle this, hopefully
-            if(path.frontier.size >= world.width() * world.height()){
+            if(path.frontier.size >= path.width * path.height){
                 path.frontier.clear();
-                return;
+                break;
             }
 
             if(cost < Float.MAX_VALUE){
-                for(Point2 point : Geometry.d4){
+                int x = index % path.width, y = index / path.width;
+
+                for(int d = 0; d < 4; d++){
+                    Point2 point = Geometry.d4[d];
+                    int dx = x + point.x, dy = y + point.y;
+                    if(!Structs.inBounds(dx, dy, path.width, path.height)) continue;
+
+                    int other = path.index(dx, dy);
+                    byte otherCost = path.costs[other];
+
+                    //targets always have a weight of 0, so they are never updated here
+                    if(otherCost >= 0 && path.weights[other] > cost + otherCost){
+                        path.frontier.addFirst(other);
+                        path.weights[other] = cost + otherCost;
+                        path.parents[other] = (byte)((d + 2) % 4);
+                        path.unpublished = true;
+                    }
+                }
+            }
+        }
+
+        if(path.frontier.size == 0 && path.dirtyTime != 0){
+            path.convergenceTime = Time.timeSinceMillis(path.dirtyTime);
+            path.dirtyTime = 0;
+        }
+    }
+
+    /** Copies the working weights of a field into its back buffer, then swaps it with the buffer units read from. */
+    private void publish(PathData path){
+        if(path.back == null || path.back.length != path.weights.length){
+            path.back = new float[path.weights.length];
+        }
+
+        float[] buffer = path.back;
+        System.arraycopy(path.weights, 0, buffer, 0, buffer.length);
+        path.back = path.published;
+        path.published = buffer;
+        path.lastPublish = Time.millis();
+        path.unpublished = false;
+    }
+
+    /** Main loop of the worker thread. */
+    private void run(){
+        try{
+            while(!Thread.currentThread().isInterrupted()){
+                PathData[] current = paths;
+                boolean working = false;
+
+                for(PathData path : current){
+                    if(path.weights == null) continue;
 
-                    int dx = tile.x + point.x, dy = tile.y + point.y;
-                    Tile other = world.tile(dx, dy);
+                    applyChanges(path);
+                    updateFrontier(path, maxUpdate);
+                    working |= path.frontier.size > 0;
 
-                    if(other != null && (path.weights[dx][dy] > cost + other.cost || path.searches[dx][dy] < path.search)
-                    && passable(other, team)){
-                        if(other.cost < 0) throw new IllegalArgumentException("Tile cost cannot be negative! " + other);
-                        path.frontier.addFirst(Pos.get(dx, dy));
-                        path.weights[dx][dy] = cost + other.cost;
-                        path.searches[dx][dy] = (short)path.search;
+                    if(path.unpublished && (path.frontier.size == 0 || Time.timeSinceMillis(path.lastPublish) >= publishInterval)){
+                        publish(path);
                     }
                 }
+
+                if(!working){
+                    Thread.sleep(idleTime);
+                }
             }
+        }catch(InterruptedException ignored){
+            //stopped by setThreaded(false)
+        }catch(Throwable e){
+            Log.err(e);
         }
     }
 
     private void clear(){
         Time.mark();
 
-        paths = new PathData[Team.all.length];
+        PathData[] created = new PathData[Team.all.length];
         blocked.clear();
 
         for(Team team : Team.all){
-            PathData path = new PathData();
-            paths[team.ordinal()] = path;
-
-            if(state.teams.isActive(team)){
-                createFor(team);
-            }
+            created[team.ordinal()] = state.teams.isActive(team) ? createFor(team) : new PathData();
         }
+
+        //the worker only ever sees complete fields
+        paths = created;
     }
 
     class PathData{
-        float[][] weights;
-        short[][] searches;
-        int search = 0;
-        long lastSearchTime;
+        /** Working weights of each tile, indexed by x + y * width. */
+        float[] weights;
+        /** Weights read by units when the worker thread is active. Swapped with the back buffer when new weights are published. */
+        volatile float[] published;
+        float[] back;
+        /** Direction of the neighbor each tile got its weight from, as an index into {@link Geometry#d4}. */
+        byte[] parents;
+        /** Cost of each tile as of its last change; -2 for targets and -1 for impassable tiles. */
+        byte[] costs;
+        int width, height;
+        /** Time at which the field was first changed since it last converged, or 0 if it is converged. */
+        long dirtyTime;
+        long convergenceTime = -1;
+        /** Whether the working weights have changed since they were last published. */
+        volatile boolean unpublished;
+        long lastPublish;
         IntQueue frontier = new IntQueue();
+        /** Tile changes waiting for the worker thread, as index and cost pairs. */
+        final IntArray changes = new IntArray();
+        /** Amount of queued changes that have not been applied yet. */
+        final AtomicInteger pending = new AtomicInteger();
+
+        int index(int x, int y){
+            return x + y * width;
+        }
+
+        float[] values(){
+            float[] result = published;
+            return result == null ? weights : result;
+        }
     }
 }
@@ -0,0 +1,173 @@
+package io.anuke.mindustry.ai;
+
+import io.anuke.arc.Events;
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.collection.IntMap;
+import io.anuke.arc.function.Predicate;
+import io.anuke.arc.math.Mathf;
+import io.anuke.mindustry.entities.Units;
+import io.anuke.mindustry.entities.traits.TargetTrait;
+import io.anuke.mindustry.entities.type.Unit;
+import io.anuke.mindustry.game.EventType.WorldLoadEvent;
+import io.anuke.mindustry.game.Team;
+import io.anuke.mindustry.world.Pos;
+import io.anuke.mindustry.world.Tile;
+
+import static io.anuke.mindustry.Vars.tilesize;
+
+/**
+ * Finds targets for turrets and units.
+ * Everything in the same region retargets during the same tick, and shares one sweep over the enemy units around
+ * that region. Regions are spread evenly over ticks.
+ */
+@SuppressWarnings("unchecked")
+public class Targeting{
+    /** Amount of ticks between two retargets of the same requester. */
+    public static final int retargetInterval = 20;
+    /** Size of one region in world units. */
+    private static final float regionSize = 16 * tilesize;
+
+    /** Regions swept during this tick, by team of the requester and packed region position. */
+    private IntMap<Region>[] regions = new IntMap[Team.all.length];
+    private Array<Region> freeRegions = new Array<>();
+    /** Game time in ticks, and the last whole tick reached before and after the current update. */
+    private double time;
+    private long lastTick, tick;
+
+    private int queries, sweeps;
+    private long queryTime;
+    private int lastQueries, lastSweeps;
+    private float lastQueryTime;
+
+    public Targeting(){
+        for(int i = 0; i < regions.length; i++){
+            regions[i] = new IntMap<>();
+        }
+
+        Events.on(WorldLoadEvent.class, event -> {
+            time = lastTick = tick = 0;
+            clear();
+        });
+    }
+
+    /** Advances time by this many ticks. Sweeps of the previous update are discarded, since units have moved since. */
+    public void update(float delta){
+        lastQueries = queries;
+        lastSweeps = sweeps;
+        lastQueryTime = queries == 0 ? 0f : queryTime / (float)queries / 1000f;
+        queries = sweeps = 0;
+        queryTime = 0;
+
+        time += delta;
+        lastTick = tick;
+        tick = (long)time;
+
+        clear();
+    }
+
+    /**
+     * @return whether a requester at this position should retarget during this update.
+     * Each region is due once every {@link #retargetInterval} ticks, in a tick picked from its position.
+     */
+    public boolean isDue(float x, float y){
+        int slot = Math.floorMod(Pos.get(region(x), region(y)), retargetInterval);
+        //first tick of this slot after the last update
+        long next = lastTick + 1 + Math.floorMod(slot - (lastTick + 1), (long)retargetInterval);
+        return next <= tick;
+    }
+
+    /** Returns the closest target enemy. First, units are checked, then tile entities. See {@link Units#closestTarget(Team, float, float, float, Predicate, Predicate)}. */
+    public TargetTrait closestTarget(Team team, float x, float y, float range, Predicate<Unit> unitPred, Predicate<Tile> tilePred){
+        if(team == Team.derelict) return null;
+
+        Unit unit = closestEnemy(team, x, y, range, unitPred);
+        if(unit != null){
+            return unit;
+        }else{
+            return Units.findEnemyTile(team, x, y, range, tilePred);
+        }
+    }
+
+    /** Returns the closest enemy of this team, using the sweep of the region this position is in. See {@link Units#closestEnemy(Team, float, float, float, Predicate)}. */
+    public Unit closestEnemy(Team team, float x, float y, float range, Predicate<Unit> predicate){
+        if(team == Team.derelict) return null;
+
+        long begin = System.nanoTime();
+        Array<Unit> units = sweep(team, x, y, range);
+
+        Unit result = null;
+        float cdist = 0f;
+
+        for(int i = 0; i < units.size; i++){
+            Unit e = units.get(i);
+            if(e.isDead() || !predicate.test(e)) continue;
+
+            float dst2 = Mathf.dst2(e.x, e.y, x, y);
+            if(dst2 < range * range && (result == null || dst2 < cdist)){
+                result = e;
+                cdist = dst2;
+            }
+        }
+
+        queries++;
+        queryTime += System.nanoTime() - begin;
+        return result;
+    }
+
+    /** @return amount of target queries during the last tick. */
+    public int getQueries(){
+        return lastQueries;
+    }
+
+    /** @return amount of region sweeps during the last tick. */
+    public int getSweeps(){
+        return lastSweeps;
+    }
+
+    /** @return average time of one target query during the last tick, in microseconds. */
+    public float getAverageQueryTime(){
+        return lastQueryTime;
+    }
+
+    /** @return enemy units that may be in range of this position, sweeping its region if needed. */
+    private Array<Unit> sweep(Team team, float x, float y, float range){
+        int rx = region(x), ry = region(y);
+        int key = Pos.get(rx, ry);
+
+        Region region = regions[team.ordinal()].get(key);
+        if(region == null){
+            region = freeRegions.isEmpty() ? new Region() : freeRegions.pop();
+            region.padding = -1f;
+            regions[team.ordinal()].put(key, region);
+        }
+
+        //everything in range of a position in this region is within the region, grown by the range
+        if(region.padding < range){
+            region.padding = range;
+            region.units.clear();
+            Units.nearbyEnemies(team, rx * regionSize - range, ry * regionSize - range, regionSize + range * 2f, regionSize + range * 2f, region.units::add);
+            sweeps++;
+        }
+
+        return region.units;
+    }
+
+    private static int region(float coordinate){
+        return (int)Math.floor(coordinate / regionSize);
+    }
+
+    private void clear(){
+        for(IntMap<Region> map : regions){
+            for(Region region : map.values()){
+                region.units.clear();
+                freeRegions.add(region);
+            }
+            map.clear();
+        }
+    }
+
+    private static class Region{
+        final Array<Unit> units = new Array<>();
+        float padding;
+    }
+}
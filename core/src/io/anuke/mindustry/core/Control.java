@@ -18,6 +18,7 @@ import io.anuke.mindustry.game.EventType.*;
 import io.anuke.mindustry.game.*;
 import io.anuke.mindustry.gen.*;
 import io.anuke.mindustry.input.*;
+import io.anuke.mindustry.io.SaveIO;
 import io.anuke.mindustry.maps.*;
 import io.anuke.mindustry.net.Net;
 import io.anuke.mindustry.type.*;
@@ -314,6 +315,8 @@ public class Control implements ApplicationListener, Loadable{
 
     @Override
     public void dispose(){
+        //autosaves are written on daemon threads, which would be stopped on exit
+        SaveIO.waitForSaves();
         content.dispose();
         Net.dispose();
         Musics.dispose();
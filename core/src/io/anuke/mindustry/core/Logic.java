@@ -3,7 +3,9 @@ package io.anuke.mindustry.core;
 import io.anuke.annotations.Annotations.Loc;
 import io.anuke.annotations.Annotations.Remote;
 import io.anuke.arc.ApplicationListener;
+import io.anuke.arc.Core;
 import io.anuke.arc.Events;
+import io.anuke.arc.collection.Array;
 import io.anuke.arc.collection.ObjectSet.ObjectSetIterator;
 import io.anuke.arc.util.*;
 import io.anuke.mindustry.content.*;
@@ -35,8 +37,12 @@ import static io.anuke.mindustry.Vars.*;
  * This class should <i>not</i> call any outside methods to change state of modules, but instead fire events.
  */
 public class Logic implements ApplicationListener{
+    /** Groups that bullets collide with, gathered every update. */
+    private final Array<EntityGroup<?>> collisionTargets = new Array<>();
 
     public Logic(){
+        Core.settings.defaults("parallelupdate", false);
+
         Events.on(WaveEvent.class, event -> {
             if(world.isZone()){
                 world.getZone().updateWave(state.wave);
@@ -102,8 +108,8 @@ public class Logic implements ApplicationListener{
         state.stats = new Stats();
 
         Time.clear();
+        scheduler.clear();
         Entities.clear();
-        TileEntity.sleepingEntities = 0;
 
         Events.fire(new ResetEvent());
     }
@@ -183,6 +189,7 @@ public class Logic implements ApplicationListener{
 
             if(!state.isPaused()){
                 Time.update();
+                scheduler.update(Time.delta());
 
                 if(state.rules.waves && state.rules.waveTimer && !state.gameOver){
                     if(!state.rules.waitForWaveToEnd || unitGroups[waveTeam.ordinal()].size() == 0){
@@ -199,7 +206,11 @@ public class Logic implements ApplicationListener{
                     Entities.update(groundEffectGroup);
                 }
 
+                Entities.setParallel(Core.settings.getBool("parallelupdate"));
+
                 if(!state.isEditor()){
+                    targeting.update(Time.delta());
+
                     for(EntityGroup group : unitGroups){
                         Entities.update(group);
                     }
@@ -207,7 +218,7 @@ public class Logic implements ApplicationListener{
                     Entities.update(puddleGroup);
                     Entities.update(shieldGroup);
                     Entities.update(bulletGroup);
-                    Entities.update(tileGroup);
+                    Entities.update(tileGroup, TileEntity.activeEntities());
                     Entities.update(fireGroup);
                 }else{
                     for(EntityGroup<?> group : unitGroups){
@@ -226,12 +237,13 @@ public class Logic implements ApplicationListener{
 
                 if(!state.isEditor()){
 
-                    for(EntityGroup group : unitGroups){
-                        if(group.isEmpty()) continue;
-                        collisions.collideGroups(bulletGroup, group);
+                    collisionTargets.clear();
+                    for(EntityGroup<?> group : unitGroups){
+                        if(!group.isEmpty()) collisionTargets.add(group);
                     }
+                    collisionTargets.add(playerGroup);
 
-                    collisions.collideGroups(bulletGroup, playerGroup);
+                    collisions.collideGroups(bulletGroup, collisionTargets);
                 }
 
                 pathfinder.update();
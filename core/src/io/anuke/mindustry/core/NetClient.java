@@ -32,7 +32,6 @@ import io.anuke.mindustry.world.modules.ItemModule;
 
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.util.zip.InflaterInputStream;
 
 import static io.anuke.mindustry.Vars.*;
 
@@ -52,6 +51,9 @@ public class NetClient implements ApplicationListener{
     private float timeoutTime = 0f;
     /** Last sent client snapshot ID. */
     private int lastSent;
+    /** ID of the latest recieved entity snapshot, and a bitmask of the 64 entity snapshots recieved before it. */
+    private int lastEntitySnapshot = -1;
+    private long entitySnapshotAcks;
 
     /** List of entities that were removed, and need not be added while syncing. */
     private IntSet removed = new IntSet();
@@ -113,7 +115,7 @@ public class NetClient implements ApplicationListener{
 
         Net.handleClient(WorldStream.class, data -> {
             Log.info("Recieved world data: {0} bytes.", data.stream.available());
-            NetworkIO.loadWorld(new InflaterInputStream(data.stream));
+            NetworkIO.loadWorld(data.stream);
 
             finishConnecting();
         });
@@ -221,6 +223,8 @@ public class NetClient implements ApplicationListener{
     public static void onWorldDataBegin(){
         Entities.clear();
         netClient.removed.clear();
+        netClient.lastEntitySnapshot = -1;
+        netClient.entitySnapshotAcks = 0;
         logic.reset();
 
         ui.chatfrag.clearMessages();
@@ -248,7 +252,9 @@ public class NetClient implements ApplicationListener{
     }
 
     @Remote(variants = Variant.one, priority = PacketPriority.low, unreliable = true)
-    public static void onEntitySnapshot(byte groupID, short amount, short dataLen, byte[] data){
+    public static void onEntitySnapshot(int snapshotID, byte groupID, short amount, short dataLen, byte[] data){
+        netClient.acknowledgeSnapshot(snapshotID);
+
         try{
             netClient.byteStream.setBytes(Net.decompressSnapshot(data, dataLen));
             DataInputStream input = netClient.dataStream;
@@ -369,6 +375,8 @@ public class NetClient implements ApplicationListener{
         quietReset = false;
         quiet = false;
         lastSent = 0;
+        lastEntitySnapshot = -1;
+        entitySnapshotAcks = 0;
 
         Entities.clear();
         ui.chatfrag.clearMessages();
@@ -403,6 +411,21 @@ public class NetClient implements ApplicationListener{
         return removed.contains(id);
     }
 
+    /** Marks an entity snapshot as recieved, so the server can stop sending entity states that have not changed. */
+    void acknowledgeSnapshot(int id){
+        if(id > lastEntitySnapshot){
+            int shift = id - lastEntitySnapshot;
+            entitySnapshotAcks = shift >= 64 ? 0 : entitySnapshotAcks << shift;
+            //the previous latest snapshot is now part of the bitmask
+            if(lastEntitySnapshot != -1 && shift <= 64){
+                entitySnapshotAcks |= 1L << (shift - 1);
+            }
+            lastEntitySnapshot = id;
+        }else if(id < lastEntitySnapshot && lastEntitySnapshot - id <= 64){
+            entitySnapshotAcks |= 1L << (lastEntitySnapshot - id - 1);
+        }
+    }
+
     void sync(){
 
         if(timer.get(0, playerSyncTime)){
@@ -422,7 +445,8 @@ public class NetClient implements ApplicationListener{
             player.isBoosting, player.isShooting, ui.chatfrag.chatOpen(),
             requests,
             Core.camera.position.x, Core.camera.position.y,
-            Core.camera.width * viewScale, Core.camera.height * viewScale);
+            Core.camera.width * viewScale, Core.camera.height * viewScale,
+            lastEntitySnapshot, entitySnapshotAcks);
         }
 
         if(timer.get(1, 60)){
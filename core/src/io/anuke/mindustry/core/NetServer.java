@@ -3,6 +3,7 @@ package io.anuke.mindustry.core;
 import io.anuke.annotations.Annotations.Loc;
 import io.anuke.annotations.Annotations.Remote;
 import io.anuke.arc.ApplicationListener;
+import io.anuke.arc.Core;
 import io.anuke.arc.Events;
 import io.anuke.arc.collection.*;
 import io.anuke.arc.graphics.Color;
@@ -19,6 +20,7 @@ import io.anuke.mindustry.entities.Entities;
 import io.anuke.mindustry.entities.EntityGroup;
 import io.anuke.mindustry.entities.traits.BuilderTrait.BuildRequest;
 import io.anuke.mindustry.entities.traits.Entity;
+import io.anuke.mindustry.entities.traits.SolidTrait;
 import io.anuke.mindustry.entities.traits.SyncTrait;
 import io.anuke.mindustry.entities.type.Player;
 import io.anuke.mindustry.game.EventType.WorldLoadEvent;
@@ -34,7 +36,6 @@ import io.anuke.mindustry.world.Tile;
 
 import java.io.*;
 import java.nio.ByteBuffer;
-import java.util.zip.DeflaterOutputStream;
 
 import static io.anuke.mindustry.Vars.*;
 
@@ -48,6 +49,8 @@ public class NetServer implements ApplicationListener{
 
     public final Administration admins = new Administration();
     public final CommandHandler clientCommands = new CommandHandler("/");
+    /** Health of tiles damaged since the last sync. */
+    public final TileHealthSync tileHealth = new TileHealthSync();
 
     /** Maps connection IDs to players. */
     private IntMap<Player> connections = new IntMap<>();
@@ -60,8 +63,29 @@ public class NetServer implements ApplicationListener{
     private ReusableByteOutStream syncStream = new ReusableByteOutStream();
     /** Data stream for writing player sync data to. */
     private DataOutputStream dataStream = new DataOutputStream(syncStream);
+    /** Cached map data for joining players. */
+    private WorldStreamCache worldCache = new WorldStreamCache();
+    /** Entity sync data, encoded once per sync frame and shared between all players. */
+    private SnapshotCache snapshotCache = new SnapshotCache();
+    /** Timer for sending snapshots to all players at once. */
+    private Interval timer = new Interval();
+    /** Entities found in a client's view while writing a snapshot. */
+    private Array<Entity> culledEntities = new Array<>();
+    /** Amount of entities written to the current entity snapshot. */
+    private int sent;
+    /** Whether to leave out entities whose state the client has already acknowledged. Updated every sync frame. */
+    private boolean deltaSnapshots;
 
     public NetServer(){
+        Core.settings.defaults(
+            "syncculling", true,
+            "syncmargin", 80,
+            "syncfarinterval", 5,
+            "syncdelta", true,
+            "batchinvokes", false,
+            "batchcompress", true
+        );
+
         Events.on(WorldLoadEvent.class, event -> {
             if(!headless){
                 connections.clear();
@@ -145,6 +169,11 @@ public class NetServer implements ApplicationListener{
 
             admins.updatePlayerJoined(uuid, ip, packet.name);
 
+            if(packet.protocol != Version.protocol){
+                kick(id, packet.protocol > Version.protocol ? KickReason.serverOutdated : KickReason.clientOutdated);
+                return;
+            }
+
             if(packet.version != Version.build && Version.build != -1 && packet.version != -1){
                 kick(id, packet.version > Version.build ? KickReason.serverOutdated : KickReason.clientOutdated);
                 return;
@@ -344,14 +373,20 @@ public class NetServer implements ApplicationListener{
     }
 
     public void sendWorldData(Player player, int clientID){
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        DeflaterOutputStream def = new FastDeflaterOutputStream(stream);
-        NetworkIO.writeWorld(player, def);
-        WorldStream data = new WorldStream();
-        data.stream = new ByteArrayInputStream(stream.toByteArray());
-        Net.sendStream(clientID, data);
-
-        Log.debug("Packed {0} compressed bytes of world data.", stream.size());
+        //the client discards all entities when it recieves a world
+        if(player.con != null){
+            player.con.baseline.reset();
+        }
+
+        long begin = Time.millis();
+
+        worldCache.write(player, bytes -> Core.app.post(() -> {
+            WorldStream data = new WorldStream();
+            data.stream = new ByteArrayInputStream(bytes);
+            Net.sendStream(clientID, data);
+
+            Log.debug("Packed {0} compressed bytes of world data in {1} ms.", bytes.length, Time.timeSinceMillis(begin));
+        }));
     }
 
     public static void onDisconnect(Player player){
@@ -390,10 +425,16 @@ public class NetServer implements ApplicationListener{
         Tile mining,
         boolean boosting, boolean shooting, boolean chatting,
         BuildRequest[] requests,
-        float viewX, float viewY, float viewWidth, float viewHeight
+        float viewX, float viewY, float viewWidth, float viewHeight,
+        int lastEntitySnapshot, long entitySnapshotAcks
     ){
         NetConnection connection = player.con;
-        if(connection == null || snapshotID < connection.lastRecievedClientSnapshot) return;
+        if(connection == null) return;
+
+        //acknowledgements are cumulative, so they are handled even if this snapshot is outdated
+        connection.baseline.acknowledge(lastEntitySnapshot, entitySnapshotAcks);
+
+        if(snapshotID < connection.lastRecievedClientSnapshot) return;
 
         boolean verifyPosition = !player.isDead() && netServer.admins.getStrict() && headless;
 
@@ -537,6 +578,12 @@ public class NetServer implements ApplicationListener{
         if(!state.is(State.menu) && Net.server()){
             sync();
         }
+
+        if(Net.server()){
+            //remote calls made during this tick are sent together
+            Net.setInvokeBatching(Core.settings.getBool("batchinvokes"), Core.settings.getBool("batchcompress"));
+            Net.flushInvokes();
+        }
     }
 
     public void kickAll(KickReason reason){
@@ -583,10 +630,23 @@ public class NetServer implements ApplicationListener{
         dataStream.close();
         byte[] stateBytes = syncStream.toByteArray();
 
+        NetConnection con = player.con;
+        byte[] compressedState = Net.compressSnapshot(stateBytes);
+        con.snapshotBytes += compressedState.length;
+
         //write basic state data.
-        Call.onStateSnapshot(player.con.id, state.wavetime, state.wave, state.enemies(), (short)stateBytes.length, Net.compressSnapshot(stateBytes));
+        Call.onStateSnapshot(con.id, state.wavetime, state.wave, state.enemies(), (short)stateBytes.length, compressedState);
 
-        viewport.setSize(player.con.viewWidth, player.con.viewHeight).setCenter(player.con.viewX, player.con.viewY);
+        //every few snapshots, send everything regardless of view so out-of-view entities stay up to date client-side
+        boolean culling = Core.settings.getBool("syncculling") && con.snapshotsSent % Math.max(Core.settings.getInt("syncfarinterval"), 1) != 0;
+        float margin = Core.settings.getInt("syncmargin");
+
+        viewport.setSize(con.viewWidth + margin * 2f, con.viewHeight + margin * 2f).setCenter(con.viewX, con.viewY);
+        con.snapshotsSent++;
+        con.syncedEntities = 0;
+        con.skippedEntities = 0;
+        con.unchangedEntities = 0;
+        con.baseline.prune(snapshotCache.count());
 
         //check for syncable groups
         for(EntityGroup<?> group : Entities.getAllGroups()){
@@ -598,38 +658,74 @@ public class NetServer implements ApplicationListener{
             }
 
             syncStream.reset();
+            sent = 0;
 
-            int sent = 0;
-
-            for(Entity entity :  group.all()){
-                SyncTrait sync = (SyncTrait)entity;
-                if(!sync.isSyncing()) continue;
+            if(culling && group.useTree() && SolidTrait.class.isAssignableFrom(group.getType())){
+                //only solid entities are inserted into the tree, so only these groups can be queried
+                culledEntities.clear();
+                group.intersect(viewport.x, viewport.y, viewport.width, viewport.height, culledEntities::add);
 
-                //write all entities now
-                dataStream.writeInt(entity.getID()); //write id
-                dataStream.writeByte(sync.getTypeID().id); //write type ID
-                sync.write(dataStream); //write entity
+                for(Entity entity : culledEntities){
+                    if(entity.getGroup() == group){
+                        writeEntity(player, group, (SyncTrait)entity);
+                    }
+                }
 
-                sent++;
+                con.skippedEntities += Math.max(group.size() - culledEntities.size, 0);
+            }else{
+                for(Entity entity : group.all()){
+                    if(culling && !viewport.contains(entity.getX(), entity.getY())){
+                        con.skippedEntities ++;
+                        continue;
+                    }
 
-                if(syncStream.size() > maxSnapshotSize){
-                    dataStream.close();
-                    byte[] syncBytes = syncStream.toByteArray();
-                    Call.onEntitySnapshot(player.con.id, (byte)group.getID(), (short)sent, (short)syncBytes.length, Net.compressSnapshot(syncBytes));
-                    sent = 0;
-                    syncStream.reset();
+                    writeEntity(player, group, (SyncTrait)entity);
                 }
             }
 
             if(sent > 0){
-                dataStream.close();
-
-                byte[] syncBytes = syncStream.toByteArray();
-                Call.onEntitySnapshot(player.con.id, (byte)group.getID(), (short)sent, (short)syncBytes.length, Net.compressSnapshot(syncBytes));
+                flushEntitySnapshot(player, group);
             }
         }
     }
 
+    /** Copies a single cached entity to the current entity snapshot, sending it if it exceeds the maximum size. */
+    private void writeEntity(Player player, EntityGroup<?> group, SyncTrait sync) throws IOException{
+        int index = snapshotCache.indexOf(group, sync.getID());
+        //entities that were not encoded this frame are either not syncing or were added after encoding; skip them
+        if(index == -1) return;
+
+        NetConnection con = player.con;
+        long hash = snapshotCache.hash(index);
+        int length = snapshotCache.length(index);
+
+        //the client already has this exact state; don't send it again
+        if(deltaSnapshots && con.baseline.isAcknowledged(group.getID(), sync.getID(), hash, length)){
+            con.unchangedEntities++;
+            return;
+        }
+
+        snapshotCache.write(index, syncStream);
+        con.baseline.record(group.getID(), sync.getID(), hash, length);
+
+        sent++;
+        con.syncedEntities++;
+
+        if(syncStream.size() > maxSnapshotSize){
+            flushEntitySnapshot(player, group);
+            syncStream.reset();
+        }
+    }
+
+    private void flushEntitySnapshot(Player player, EntityGroup<?> group) throws IOException{
+        dataStream.close();
+        byte[] syncBytes = syncStream.toByteArray();
+        byte[] compressed = Net.compressSnapshot(syncBytes);
+        player.con.snapshotBytes += compressed.length;
+        Call.onEntitySnapshot(player.con.id, player.con.baseline.flush(), (byte)group.getID(), (short)sent, (short)syncBytes.length, compressed);
+        sent = 0;
+    }
+
     String fixName(String name){
         name = name.trim();
         if(name.equals("[") || name.equals("]")){
@@ -680,6 +776,21 @@ public class NetServer implements ApplicationListener{
         return str;
     }
 
+    /**
+     * Encodes the sync data of all syncable entities into the shared snapshot cache.
+     * Must be called once per sync frame, before {@link #writeSnapshot(Player)}.
+     */
+    public void cacheSnapshots() throws IOException{
+        deltaSnapshots = Core.settings.getBool("syncdelta");
+        snapshotCache.begin();
+
+        for(EntityGroup<?> group : Entities.getAllGroups()){
+            if(group.isEmpty() || !(group.all().get(0) instanceof SyncTrait)) continue;
+
+            snapshotCache.encode(group);
+        }
+    }
+
     void sync(){
 
         try{
@@ -696,10 +807,27 @@ public class NetServer implements ApplicationListener{
                     onDisconnect(player);
                     return;
                 }
+            }
+
+            //all players are synced in the same frame, so entities only need to be encoded once
+            if(!timer.get(serverSyncTime)) return;
 
-                if(!player.timer.get(Player.timerSync, serverSyncTime) || !connection.hasConnected) continue;
+            cacheSnapshots();
+            tileHealth.flush();
+
+            for(int i = 0; i < playerGroup.size(); i++){
+                Player player = playerGroup.all().get(i);
+                if(player.isLocal || !player.con.hasConnected) continue;
 
                 writeSnapshot(player);
+
+                NetConnection connection = player.con;
+                long elapsed = Time.timeSinceMillis(connection.lastSnapshotMeasure);
+                if(elapsed >= 1000){
+                    connection.snapshotBytesPerSecond = (int)(connection.snapshotBytes * 1000L / elapsed);
+                    connection.snapshotBytes = 0;
+                    connection.lastSnapshotMeasure = Time.millis();
+                }
             }
 
         }catch(IOException e){
@@ -3,6 +3,7 @@ package io.anuke.mindustry.core;
 import io.anuke.annotations.Annotations.*;
 import io.anuke.arc.*;
 import io.anuke.arc.collection.*;
+import io.anuke.arc.function.Consumer;
 import io.anuke.arc.math.*;
 import io.anuke.arc.math.geom.*;
 import io.anuke.arc.util.*;
@@ -29,6 +30,7 @@ public class World{
     private Tile[][] tiles;
 
     private boolean generating, invalidMap;
+    private final Array<Consumer<Tile>> changeListeners = new Array<>(), dataListeners = new Array<>();
 
     public World(){
 
@@ -212,7 +214,12 @@ public class World{
 
     public void loadMap(Map map, Rules checkRules){
         try{
-            SaveIO.load(map.file, new FilterContext(map));
+            if(headless){
+                //servers cycle through maps, so they keep uncompressed copies that load faster
+                SaveIO.loadMapped(MapIO.uncompressedFile(map), new FilterContext(map));
+            }else{
+                SaveIO.load(map.file, new FilterContext(map));
+            }
         }catch(Exception e){
             Log.err(e);
             if(!headless){
@@ -265,8 +272,32 @@ public class World{
         if(invalidMap) Core.app.post(() -> state.set(State.menu));
     }
 
+    /** Adds a listener that is called as soon as a tile changes. {@link TileChangeEvent}s are only fired in the next frame. */
+    public void addChangeListener(Consumer<Tile> listener){
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Adds a listener that is called as soon as the saved data of a tile may have changed without its block changing,
+     * such as the state of its tile entity. This happens on every tile entity update, so listeners must be cheap.
+     */
+    public void addDataListener(Consumer<Tile> listener){
+        dataListeners.add(listener);
+    }
+
+    public void notifyDataChanged(Tile tile){
+        if(!generating){
+            for(int i = 0; i < dataListeners.size; i++){
+                dataListeners.get(i).accept(tile);
+            }
+        }
+    }
+
     public void notifyChanged(Tile tile){
         if(!generating){
+            for(int i = 0; i < changeListeners.size; i++){
+                changeListeners.get(i).accept(tile);
+            }
             Core.app.post(() -> Events.fire(new TileChangeEvent(tile)));
         }
     }
@@ -0,0 +1,19 @@
+package io.anuke.mindustry.entities;
+
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.function.Consumer;
+import io.anuke.mindustry.entities.traits.Entity;
+import io.anuke.mindustry.entities.traits.SolidTrait;
+
+/** Finds the solid entities of a group that intersect an area. See {@link EntityGroup#setBroadphase(Broadphase)}. */
+public interface Broadphase{
+
+    /** Called when the world is loaded, with the bounds of the world. */
+    void resize(float x, float y, float width, float height);
+
+    /** Called once per update with every entity of the group. Entities that are not solid are ignored. */
+    void update(Array<? extends Entity> entities);
+
+    /** Passes every entity whose hitbox overlaps the specified rectangle to the consumer. */
+    void intersect(float x, float y, float width, float height, Consumer<? super SolidTrait> out);
+}
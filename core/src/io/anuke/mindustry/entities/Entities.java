@@ -9,6 +9,10 @@ import io.anuke.arc.graphics.Camera;
 import io.anuke.arc.math.geom.Rectangle;
 import io.anuke.mindustry.entities.traits.DrawTrait;
 import io.anuke.mindustry.entities.traits.Entity;
+import io.anuke.mindustry.entities.traits.ParallelTrait;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static io.anuke.mindustry.Vars.collisions;
 
@@ -18,6 +22,10 @@ public class Entities{
     private static final Rectangle viewport = new Rectangle();
     private static final boolean clip = true;
     private static int count = 0;
+    /** Minimum amount of entities handled by each task when updating in parallel. */
+    private static final int parallelSlice = 256;
+    /** Pool used for the parallel part of entity updates, or null if everything is updated on the main thread. */
+    private static ForkJoinPool pool;
 
     public static void clear(){
         for(EntityGroup group : groupArray){
@@ -44,14 +52,49 @@ public class Entities{
         return group;
     }
 
+    /**
+     * Enables or disables updating entities in parallel.
+     * When enabled, {@link ParallelTrait#updateParallel()} is spread over all available cores, and is otherwise called on the main thread.
+     * Since it may only touch the entity it is called on, both modes produce the same results.
+     */
+    public static void setParallel(boolean parallel){
+        if(parallel == (pool != null)) return;
+
+        if(parallel){
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }else{
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    public static boolean isParallel(){
+        return pool != null;
+    }
+
     public static void update(EntityGroup<?> group){
+        update(group, group.all());
+    }
+
+    /** Updates the events and physics of a group, but only updates the specified entities of it. */
+    public static void update(EntityGroup<?> group, Array<? extends Entity> entities){
         group.updateEvents();
 
         if(group.useTree()){
             collisions.updatePhysics(group);
         }
 
-        for(Entity e : group.all()){
+        if(ParallelTrait.class.isAssignableFrom(group.getType())){
+            if(pool != null && entities.size > parallelSlice){
+                pool.invoke(new ParallelUpdate(entities, 0, entities.size));
+            }else{
+                for(Entity e : entities){
+                    ((ParallelTrait)e).updateParallel();
+                }
+            }
+        }
+
+        for(Entity e : entities){
             e.update();
         }
     }
@@ -86,4 +129,28 @@ public class Entities{
             }
         }
     }
+
+    /** Calls {@link ParallelTrait#updateParallel()} on a range of entities, splitting it up until it is small enough. */
+    private static class ParallelUpdate extends RecursiveAction{
+        private final Array<? extends Entity> entities;
+        private final int from, to;
+
+        ParallelUpdate(Array<? extends Entity> entities, int from, int to){
+            this.entities = entities;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from <= parallelSlice){
+                for(int i = from; i < to; i++){
+                    ((ParallelTrait)entities.get(i)).updateParallel();
+                }
+            }else{
+                int mid = (from + to) >>> 1;
+                invokeAll(new ParallelUpdate(entities, from, mid), new ParallelUpdate(entities, mid, to));
+            }
+        }
+    }
 }
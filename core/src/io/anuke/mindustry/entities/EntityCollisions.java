@@ -7,14 +7,17 @@ import io.anuke.mindustry.entities.traits.Entity;
 import io.anuke.mindustry.entities.traits.SolidTrait;
 import io.anuke.mindustry.world.Tile;
 
-import static io.anuke.mindustry.Vars.tilesize;
-import static io.anuke.mindustry.Vars.world;
+import java.util.Arrays;
+
+import static io.anuke.mindustry.Vars.*;
 
 public class EntityCollisions{
     //range for tile collision scanning
     private static final int r = 1;
     //move in 1-unit chunks
     private static final float seg = 1f;
+    //size of the cells sources are sorted into when colliding groups
+    private static final float cellSize = tilesize * 4;
 
     //tile collisions
     private Rectangle tmp = new Rectangle();
@@ -24,7 +27,16 @@ public class EntityCollisions{
     private Rectangle r2 = new Rectangle();
 
     //entity collisions
-    private Array<SolidTrait> arrOut = new Array<>();
+    private Array<EntityGroup<?>> singleGroup = new Array<>();
+
+    //fused group collisions: swept hitboxes of the source group as min x, min y, max x, max y
+    private SolidTrait[] sources = new SolidTrait[64];
+    private float[] sourceBounds = new float[64 * 4];
+    private int sourceCount;
+    private float maxExtent;
+    //sources sorted by cell
+    private int gridWidth, gridHeight;
+    private int[] cellStarts = {}, cellItems = new int[64];
 
     public void move(SolidTrait entity, float deltax, float deltay){
 
@@ -110,16 +122,14 @@ public class EntityCollisions{
     @SuppressWarnings("unchecked")
     public <T extends Entity> void updatePhysics(EntityGroup<T> group){
 
-        QuadTree tree = group.tree();
-        tree.clear();
-
         for(Entity entity : group.all()){
             if(entity instanceof SolidTrait){
                 SolidTrait s = (SolidTrait)entity;
                 s.lastPosition().set(s.getX(), s.getY());
-                tree.insert(s);
             }
         }
+
+        group.broadphase().update(group.all());
     }
 
     private static boolean solid(int x, int y){
@@ -206,31 +216,125 @@ public class EntityCollisions{
         }
     }
 
-    @SuppressWarnings("unchecked")
+    /** Collides every solid entity of one group with every solid entity of another. */
     public void collideGroups(EntityGroup<?> groupa, EntityGroup<?> groupb){
+        singleGroup.clear();
+        singleGroup.add(groupb);
+        collideGroups(groupa, singleGroup);
+    }
 
-        for(Entity entity : groupa.all()){
-            if(!(entity instanceof SolidTrait))
-                continue;
+    /**
+     * Collides every solid entity of the source group with every solid entity of the target groups.
+     * The swept hitboxes of the sources are gathered and sorted into a grid once, and then every target is tested against
+     * the sources in its cells. Collision callbacks are only dispatched for pairs that actually overlap.
+     */
+    public void collideGroups(EntityGroup<?> source, Array<EntityGroup<?>> targets){
+        if(source.isEmpty()) return;
+
+        gatherSources(source);
+        if(sourceCount == 0) return;
+        sortSources();
+
+        for(EntityGroup<?> group : targets){
+            for(Entity entity : group.all()){
+                if(!(entity instanceof SolidTrait)) continue;
+
+                SolidTrait target = (SolidTrait)entity;
+                target.hitbox(r1);
+                float minx = r1.x, miny = r1.y, maxx = r1.x + r1.width, maxy = r1.y + r1.height;
+
+                int cminx = cellX(minx - maxExtent), cminy = cellY(miny - maxExtent);
+                int cmaxx = cellX(maxx + maxExtent), cmaxy = cellY(maxy + maxExtent);
+
+                for(int cy = cminy; cy <= cmaxy; cy++){
+                    for(int cx = cminx; cx <= cmaxx; cx++){
+                        int cell = cx + cy * gridWidth;
+                        for(int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++){
+                            int index = cellItems[i], offset = index * 4;
+                            if(sourceBounds[offset] <= maxx && sourceBounds[offset + 2] >= minx
+                            && sourceBounds[offset + 1] <= maxy && sourceBounds[offset + 3] >= miny){
+                                checkCollide(sources[index], target);
+                            }
+                        }
+                    }
+                }
+            }
+        }
 
-            SolidTrait solid = (SolidTrait)entity;
+        Arrays.fill(sources, 0, sourceCount, null);
+    }
+
+    /** Stores the hitbox of every solid source, extended by its movement this frame. */
+    private void gatherSources(EntityGroup<?> group){
+        Array<? extends Entity> all = group.all();
+        if(sources.length < all.size){
+            sources = new SolidTrait[all.size];
+            sourceBounds = new float[all.size * 4];
+            cellItems = new int[all.size];
+        }
+
+        sourceCount = 0;
+        maxExtent = 0f;
 
-            solid.hitbox(r1);
-            r1.x += (solid.lastPosition().x - solid.getX());
-            r1.y += (solid.lastPosition().y - solid.getY());
+        for(Entity entity : all){
+            if(!(entity instanceof SolidTrait)) continue;
 
+            SolidTrait solid = (SolidTrait)entity;
             solid.hitbox(r2);
-            r2.merge(r1);
+            float dx = solid.lastPosition().x - solid.getX(), dy = solid.lastPosition().y - solid.getY();
+
+            int offset = sourceCount * 4;
+            sourceBounds[offset] = r2.x + Math.min(dx, 0f);
+            sourceBounds[offset + 1] = r2.y + Math.min(dy, 0f);
+            sourceBounds[offset + 2] = r2.x + r2.width + Math.max(dx, 0f);
+            sourceBounds[offset + 3] = r2.y + r2.height + Math.max(dy, 0f);
+            maxExtent = Math.max(maxExtent, Math.max(r2.width + Math.abs(dx), r2.height + Math.abs(dy)) / 2f);
+            sources[sourceCount++] = solid;
+        }
+    }
 
-            arrOut.clear();
-            groupb.tree().getIntersect(arrOut, r2);
+    /** Sorts the sources into cells by the center of their bounds, with a counting sort. */
+    private void sortSources(){
+        gridWidth = Math.max(1, Mathf.ceil((world.width() * tilesize + finalWorldBounds * 2) / cellSize));
+        gridHeight = Math.max(1, Mathf.ceil((world.height() * tilesize + finalWorldBounds * 2) / cellSize));
 
-            for(SolidTrait sc : arrOut){
-                sc.hitbox(r1);
-                if(r2.overlaps(r1)){
-                    checkCollide(entity, sc);
-                }
-            }
+        int cells = gridWidth * gridHeight;
+        if(cellStarts.length != cells + 1){
+            cellStarts = new int[cells + 1];
+        }else{
+            Arrays.fill(cellStarts, 0);
         }
+
+        //count sources per cell, offset by one so the prefix sum ends up as the start of each cell
+        for(int i = 0; i < sourceCount; i++){
+            cellStarts[sourceCell(i) + 1]++;
+        }
+
+        for(int i = 0; i < cells; i++){
+            cellStarts[i + 1] += cellStarts[i];
+        }
+
+        //fill from the back, so every cell keeps its sources in their original order
+        for(int i = sourceCount - 1; i >= 0; i--){
+            int cell = sourceCell(i);
+            cellItems[--cellStarts[cell + 1]] = i;
+        }
+
+        //cellStarts[c + 1] now points at the start of cell c, so shift everything down by one
+        System.arraycopy(cellStarts, 1, cellStarts, 0, cells);
+        cellStarts[cells] = sourceCount;
+    }
+
+    private int sourceCell(int index){
+        int offset = index * 4;
+        return cellX((sourceBounds[offset] + sourceBounds[offset + 2]) / 2f) + cellY((sourceBounds[offset + 1] + sourceBounds[offset + 3]) / 2f) * gridWidth;
+    }
+
+    private int cellX(float x){
+        return Mathf.clamp((int)((x + finalWorldBounds) / cellSize), 0, gridWidth - 1);
+    }
+
+    private int cellY(float y){
+        return Mathf.clamp((int)((y + finalWorldBounds) / cellSize), 0, gridHeight - 1);
     }
 }
@@ -18,7 +18,9 @@ public class EntityGroup<T extends Entity>{
     private final Array<T> entitiesToRemove = new Array<>(false, 16);
     private final Array<T> entitiesToAdd = new Array<>(false, 16);
     private IntMap<T> map;
-    private QuadTree tree;
+    private boolean ordered;
+    private Broadphase broadphase;
+    private final Rectangle bounds = new Rectangle();
     private Consumer<T> removeListener;
     private Consumer<T> addListener;
 
@@ -28,7 +30,7 @@ public class EntityGroup<T extends Entity>{
         this.type = type;
 
         if(useTree){
-            tree = new QuadTree<>(new Rectangle(0, 0, 0, 0));
+            broadphase = new QuadTreeBroadphase();
         }
     }
 
@@ -49,6 +51,28 @@ public class EntityGroup<T extends Entity>{
         return this;
     }
 
+    /**
+     * Keeps entities in the order they were added in. Removal then compacts the whole array once per update,
+     * instead of moving the last entity into the place of each removed one.
+     */
+    public EntityGroup<T> enableOrdering(){
+        ordered = true;
+        return this;
+    }
+
+    /** Replaces the broadphase used to find entities by area. Only groups that use a tree have one. */
+    public EntityGroup<T> setBroadphase(Broadphase broadphase){
+        if(!useTree) throw new RuntimeException("This group does not support broadphases! Enable trees when creating it.");
+        this.broadphase = broadphase;
+        broadphase.resize(bounds.x, bounds.y, bounds.width, bounds.height);
+        return this;
+    }
+
+    public Broadphase broadphase(){
+        if(!useTree) throw new RuntimeException("This group does not support broadphases! Enable trees when creating it.");
+        return broadphase;
+    }
+
     public boolean mappingEnabled(){
         return map != null;
     }
@@ -64,8 +88,10 @@ public class EntityGroup<T extends Entity>{
     public void updateEvents(){
 
         for(T e : entitiesToAdd){
-            if(e == null)
+            //skip entities that were removed and added again before they were ever removed from the array
+            if(e == null || e.getGroupIndex() != -1)
                 continue;
+            e.setGroupIndex(entityArray.size);
             entityArray.add(e);
             e.added();
 
@@ -76,8 +102,41 @@ public class EntityGroup<T extends Entity>{
 
         entitiesToAdd.clear();
 
-        for(T e : entitiesToRemove){
-            entityArray.removeValue(e, true);
+        if(entitiesToRemove.isEmpty()) return;
+
+        int removed = 0;
+        for(int i = 0; i < entitiesToRemove.size; i++){
+            T e = entitiesToRemove.get(i);
+            //skip entities that were removed twice, or added back since
+            if(e.getGroupIndex() == -1 || e.getGroup() == this)
+                continue;
+
+            if(!ordered){
+                int index = e.getGroupIndex();
+                T last = entityArray.pop();
+                if(last != e){
+                    entityArray.set(index, last);
+                    last.setGroupIndex(index);
+                }
+            }
+            e.setGroupIndex(-1);
+            entitiesToRemove.set(removed++, e);
+        }
+
+        if(ordered){
+            int size = 0;
+            for(int i = 0; i < entityArray.size; i++){
+                T e = entityArray.get(i);
+                if(e.getGroupIndex() != -1){
+                    e.setGroupIndex(size);
+                    entityArray.set(size++, e);
+                }
+            }
+            entityArray.truncate(size);
+        }
+
+        for(int i = 0; i < removed; i++){
+            T e = entitiesToRemove.get(i);
             if(map != null){
                 map.remove(e.getID());
             }
@@ -94,19 +153,10 @@ public class EntityGroup<T extends Entity>{
 
     public void removeByID(int id){
         if(map == null) throw new RuntimeException("Mapping is not enabled for group " + id + "!");
+        //queued entities are mapped as soon as they are added, so they are found here too
         T t = map.get(id);
-        if(t != null){ //remove if present in map already
+        if(t != null){
             remove(t);
-        }else{ //maybe it's being queued?
-            for(T check : entitiesToAdd){
-                if(check.getID() == id){ //if it is indeed queued, remove it
-                    entitiesToAdd.removeValue(check, true);
-                    if(removeListener != null){
-                        removeListener.accept(check);
-                    }
-                    break;
-                }
-            }
         }
     }
 
@@ -114,18 +164,19 @@ public class EntityGroup<T extends Entity>{
     public void intersect(float x, float y, float width, float height, Consumer<? super T> out){
         //don't waste time for empty groups
         if(isEmpty()) return;
-        tree().getIntersect(out, x, y, width, height);
+        broadphase().intersect(x, y, width, height, (Consumer)out);
     }
 
     public QuadTree tree(){
-        if(!useTree) throw new RuntimeException("This group does not support quadtrees! Enable quadtrees when creating it.");
-        return tree;
+        if(!(broadphase() instanceof QuadTreeBroadphase)) throw new RuntimeException("This group does not use a quadtree!");
+        return ((QuadTreeBroadphase)broadphase).tree();
     }
 
-    /** Resizes the internal quadtree, if it is enabled.*/
+    /** Resizes the internal broadphase, if it is enabled.*/
     public void resize(float x, float y, float w, float h){
+        bounds.set(x, y, w, h);
         if(useTree){
-            tree = new QuadTree<>(new Rectangle(x, y, w, h));
+            broadphase.resize(x, y, w, h);
         }
     }
 
@@ -174,6 +225,7 @@ public class EntityGroup<T extends Entity>{
         for(T entity : entityArray){
             entity.removed();
             entity.setGroup(null);
+            entity.setGroupIndex(-1);
         }
 
         for(T entity : entitiesToAdd)
@@ -0,0 +1,39 @@
+package io.anuke.mindustry.entities;
+
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.function.Consumer;
+import io.anuke.arc.math.geom.QuadTree;
+import io.anuke.arc.math.geom.Rectangle;
+import io.anuke.mindustry.entities.traits.Entity;
+import io.anuke.mindustry.entities.traits.SolidTrait;
+
+/** Broadphase that rebuilds a quadtree from scratch on every update. */
+public class QuadTreeBroadphase implements Broadphase{
+    private QuadTree<SolidTrait> tree = new QuadTree<>(new Rectangle(0, 0, 0, 0));
+
+    public QuadTree<SolidTrait> tree(){
+        return tree;
+    }
+
+    @Override
+    public void resize(float x, float y, float width, float height){
+        tree = new QuadTree<>(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void update(Array<? extends Entity> entities){
+        tree.clear();
+
+        for(Entity entity : entities){
+            if(entity instanceof SolidTrait){
+                tree.insert((SolidTrait)entity);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void intersect(float x, float y, float width, float height, Consumer<? super SolidTrait> out){
+        tree.getIntersect((Consumer<SolidTrait>)out, x, y, width, height);
+    }
+}
@@ -0,0 +1,155 @@
+package io.anuke.mindustry.entities;
+
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.function.Consumer;
+import io.anuke.arc.math.Mathf;
+import io.anuke.arc.math.geom.Rectangle;
+import io.anuke.mindustry.entities.traits.Entity;
+import io.anuke.mindustry.entities.traits.SolidTrait;
+
+import java.util.Arrays;
+
+import static io.anuke.mindustry.Vars.tilesize;
+
+/**
+ * Broadphase that sorts entities into a flat grid of tile-aligned cells.
+ * Every cell holds a linked list of slots, stored in int arrays. Slot i belongs to the i-th solid entity of the group,
+ * so an entity that stays in the same slot and cell between two updates costs nothing to update.
+ * Entities are sorted into cells by their position, so queries are extended by the largest hitbox seen.
+ */
+public class SpatialHash implements Broadphase{
+    private final float cellSize;
+    private final Rectangle rect = new Rectangle();
+
+    private float offsetX, offsetY;
+    private int width = 1, height = 1;
+    /** First slot in each cell, or -1 if the cell is empty. */
+    private int[] heads = {-1};
+
+    private SolidTrait[] entities = new SolidTrait[16];
+    private int[] cells = new int[16], next = new int[16], prev = new int[16];
+    private int size;
+    /** Largest distance between the position of an entity and the edge of its hitbox. */
+    private float maxExtent;
+
+    /** @param cellTiles size of each cell, in tiles. */
+    public SpatialHash(int cellTiles){
+        this.cellSize = cellTiles * tilesize;
+    }
+
+    @Override
+    public void resize(float x, float y, float width, float height){
+        offsetX = x;
+        offsetY = y;
+        this.width = Math.max(1, Mathf.ceil(width / cellSize));
+        this.height = Math.max(1, Mathf.ceil(height / cellSize));
+        heads = new int[this.width * this.height];
+        Arrays.fill(heads, -1);
+        Arrays.fill(entities, 0, size, null);
+        size = 0;
+        maxExtent = 0f;
+    }
+
+    @Override
+    public void update(Array<? extends Entity> all){
+        int count = 0;
+
+        for(int i = 0; i < all.size; i++){
+            Entity entity = all.get(i);
+            if(!(entity instanceof SolidTrait)) continue;
+
+            SolidTrait solid = (SolidTrait)entity;
+            int slot = count++;
+            int cell = cell(solid.getX(), solid.getY());
+
+            if(slot < size){
+                if(entities[slot] == solid && cells[slot] == cell) continue;
+                unlink(slot);
+            }else if(slot >= entities.length){
+                grow();
+            }
+
+            if(entities[slot] != solid){
+                entities[slot] = solid;
+                solid.hitbox(rect);
+                maxExtent = Math.max(maxExtent, Math.max(rect.width, rect.height) / 2f);
+            }
+
+            link(slot, cell);
+        }
+
+        for(int i = count; i < size; i++){
+            unlink(i);
+            entities[i] = null;
+        }
+
+        size = count;
+    }
+
+    @Override
+    public void intersect(float x, float y, float width, float height, Consumer<? super SolidTrait> out){
+        if(size == 0) return;
+
+        int minx = cellX(x - maxExtent), miny = cellY(y - maxExtent);
+        int maxx = cellX(x + width + maxExtent), maxy = cellY(y + height + maxExtent);
+
+        for(int cy = miny; cy <= maxy; cy++){
+            for(int cx = minx; cx <= maxx; cx++){
+                for(int slot = heads[cx + cy * this.width]; slot != -1; slot = next[slot]){
+                    SolidTrait entity = entities[slot];
+                    entity.hitbox(rect);
+                    if(rect.overlaps(x, y, width, height)){
+                        out.accept(entity);
+                    }
+                }
+            }
+        }
+    }
+
+    /** @return amount of entities in this hash. */
+    public int size(){
+        return size;
+    }
+
+    private int cell(float x, float y){
+        return cellX(x) + cellY(y) * width;
+    }
+
+    private int cellX(float x){
+        return Mathf.clamp((int)((x - offsetX) / cellSize), 0, width - 1);
+    }
+
+    private int cellY(float y){
+        return Mathf.clamp((int)((y - offsetY) / cellSize), 0, height - 1);
+    }
+
+    private void link(int slot, int cell){
+        cells[slot] = cell;
+        prev[slot] = -1;
+        next[slot] = heads[cell];
+        if(heads[cell] != -1){
+            prev[heads[cell]] = slot;
+        }
+        heads[cell] = slot;
+    }
+
+    private void unlink(int slot){
+        if(prev[slot] != -1){
+            next[prev[slot]] = next[slot];
+        }else{
+            heads[cells[slot]] = next[slot];
+        }
+
+        if(next[slot] != -1){
+            prev[next[slot]] = prev[slot];
+        }
+    }
+
+    private void grow(){
+        int length = entities.length * 2;
+        entities = Arrays.copyOf(entities, length);
+        cells = Arrays.copyOf(cells, length);
+        next = Arrays.copyOf(next, length);
+        prev = Arrays.copyOf(prev, length);
+    }
+}
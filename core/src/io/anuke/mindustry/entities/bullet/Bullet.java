@@ -19,7 +19,7 @@ import io.anuke.mindustry.world.Tile;
 import static io.anuke.mindustry.Vars.bulletGroup;
 import static io.anuke.mindustry.Vars.world;
 
-public class Bullet extends SolidEntity implements DamageTrait, ScaleTrait, Poolable, DrawTrait, VelocityTrait, TimeTrait, TeamTrait, AbsorbTrait{
+public class Bullet extends SolidEntity implements DamageTrait, ScaleTrait, Poolable, DrawTrait, VelocityTrait, TimeTrait, TeamTrait, AbsorbTrait, ParallelTrait{
     public Interval timer = new Interval(3);
 
     private float lifeScl;
@@ -180,9 +180,7 @@ public class Bullet extends SolidEntity implements DamageTrait, ScaleTrait, Pool
     }
 
     @Override
-    public void update(){
-        type.update(this);
-
+    public void updateParallel(){
         x += velocity.x * Time.delta();
         y += velocity.y * Time.delta();
 
@@ -190,6 +188,11 @@ public class Bullet extends SolidEntity implements DamageTrait, ScaleTrait, Pool
 
         time += Time.delta() * 1f / (lifeScl);
         time = Mathf.clamp(time, 0, type.lifetime);
+    }
+
+    @Override
+    public void update(){
+        type.update(this);
 
         if(time >= type.lifetime){
             if(!supressCollision) type.despawned(this);
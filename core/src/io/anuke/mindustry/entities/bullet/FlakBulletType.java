@@ -1,14 +1,23 @@
 package io.anuke.mindustry.entities.bullet;
 
+import io.anuke.arc.function.Consumer;
 import io.anuke.arc.math.geom.Rectangle;
-import io.anuke.arc.util.Time;
 import io.anuke.mindustry.content.Fx;
 import io.anuke.mindustry.entities.Units;
 
+import static io.anuke.mindustry.Vars.scheduler;
+
 public abstract class FlakBulletType extends BasicBulletType{
     protected static Rectangle rect = new Rectangle();
     protected float explodeRange = 30f;
 
+    /** Ends the life of a bullet that came close to an enemy. */
+    protected static final Consumer<Bullet> explode = b -> {
+        if(b.getData() instanceof Integer){
+            b.time(b.lifetime());
+        }
+    };
+
     public FlakBulletType(float speed, float damage){
         super(speed, damage, "shell");
         splashDamage = 15f;
@@ -29,11 +38,7 @@ public abstract class FlakBulletType extends BasicBulletType{
 
                 if(unit.dst(b) < explodeRange){
                     b.setData(0);
-                    Time.run(5f, () -> {
-                        if(b.getData() instanceof Integer){
-                            b.time(b.lifetime());
-                        }
-                    });
+                    scheduler.run(5f, b, explode);
                 }
             });
         }
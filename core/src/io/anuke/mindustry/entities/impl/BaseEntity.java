@@ -9,6 +9,7 @@ public abstract class BaseEntity implements Entity{
     public int id;
     public float x, y;
     protected transient EntityGroup group;
+    protected transient int groupIndex = -1;
 
     public BaseEntity(){
         id = lastid++;
@@ -34,6 +35,16 @@ public abstract class BaseEntity implements Entity{
         this.group = group;
     }
 
+    @Override
+    public int getGroupIndex(){
+        return groupIndex;
+    }
+
+    @Override
+    public void setGroupIndex(int index){
+        this.groupIndex = index;
+    }
+
     @Override
     public float getX(){
         return x;
@@ -36,6 +36,11 @@ public interface Entity extends MoveTrait{
 
     void setGroup(EntityGroup group);
 
+    /** @return index of this entity in the array of its group, or -1 if it is not in one. Only the group may change this. */
+    int getGroupIndex();
+
+    void setGroupIndex(int index);
+
     default boolean isAdded(){
         return getGroup() != null;
     }
@@ -0,0 +1,12 @@
+package io.anuke.mindustry.entities.traits;
+
+/** An entity with a part of its update that only touches its own state. See {@link io.anuke.mindustry.entities.Entities#setParallel(boolean)}. */
+public interface ParallelTrait extends Entity{
+
+    /**
+     * Called for every entity of a group before any of them are updated, possibly from several threads at once.
+     * May only read and write the state of this entity: no spawning, damage, effects, remote calls or random numbers.
+     * Everything else belongs in {@link #update()}, which always runs on the main thread in order.
+     */
+    void updateParallel();
+}
@@ -28,7 +28,6 @@ import static io.anuke.mindustry.Vars.*;
 public abstract class BaseUnit extends Unit implements ShooterTrait{
     protected static int timerIndex = 0;
 
-    protected static final int timerTarget = timerIndex++;
     protected static final int timerTarget2 = timerIndex++;
     protected static final int timerShootLeft = timerIndex++;
     protected static final int timerShootRight = timerIndex++;
@@ -129,7 +128,7 @@ public abstract class BaseUnit extends Unit implements ShooterTrait{
     }
 
     public boolean retarget(){
-        return timer.get(timerTarget, 20);
+        return targeting.isDue(x, y);
     }
 
     /** Only runs when the unit has a target. */
@@ -155,7 +154,7 @@ public abstract class BaseUnit extends Unit implements ShooterTrait{
     }
 
     public void targetClosest(){
-        TargetTrait newTarget = Units.closestTarget(team, x, y, Math.max(getWeapon().bullet.range(), type.range), u -> type.targetAir || !u.isFlying());
+        TargetTrait newTarget = targeting.closestTarget(team, x, y, Math.max(getWeapon().bullet.range(), type.range), u -> type.targetAir || !u.isFlying(), t -> true);
         if(newTarget != null){
             target = newTarget;
         }
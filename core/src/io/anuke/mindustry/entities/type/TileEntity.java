@@ -11,10 +11,13 @@ import io.anuke.mindustry.entities.EntityGroup;
 import io.anuke.mindustry.entities.bullet.Bullet;
 import io.anuke.mindustry.entities.impl.BaseEntity;
 import io.anuke.mindustry.entities.traits.HealthTrait;
+import io.anuke.mindustry.entities.traits.ParallelTrait;
 import io.anuke.mindustry.entities.traits.TargetTrait;
 import io.anuke.mindustry.game.*;
 import io.anuke.mindustry.game.EventType.BlockDestroyEvent;
 import io.anuke.mindustry.gen.*;
+import io.anuke.mindustry.net.Net;
+import io.anuke.mindustry.net.TileHealthSync;
 import io.anuke.mindustry.world.*;
 import io.anuke.mindustry.world.modules.*;
 
@@ -22,11 +25,13 @@ import java.io.*;
 
 import static io.anuke.mindustry.Vars.*;
 
-public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
+public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait, ParallelTrait{
     public static final float timeToSleep = 60f * 4; //4 seconds to fall asleep
     private static final ObjectSet<Tile> tmpTiles = new ObjectSet<>();
-    /** This value is only used for debugging. */
-    public static int sleepingEntities = 0;
+    /** Entities of the tile group that are awake, in no particular order. Sleeping entities stay in the group, but are not updated. */
+    private static final Array<TileEntity> activeEntities = new Array<>(false, 64);
+    /** Entities that fell asleep or woke up since the active entities were last requested. */
+    private static final Array<TileEntity> changedEntities = new Array<>(false, 16);
 
     public Tile tile;
     public Block block;
@@ -42,8 +47,10 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
     /** List of (cached) tiles with entities in proximity, used for outputting to */
     private Array<Tile> proximity = new Array<>(8);
     private boolean dead = false;
-    private boolean sleeping;
+    private boolean sleeping, changed;
     private float sleepTime;
+    /** Index in the active entities, or -1 if not active. */
+    private int activeIndex = -1;
     private @Nullable SoundLoop sound;
 
     @Remote(called = Loc.server, unreliable = true)
@@ -57,6 +64,11 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         }
     }
 
+    @Remote(unreliable = true)
+    public static void onTileHealth(byte[] data){
+        TileHealthSync.read(data);
+    }
+
     @Remote(called = Loc.server)
     public static void onTileDestroyed(Tile tile){
         if(tile.entity == null) return;
@@ -88,23 +100,49 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         return Time.delta() * timeScale;
     }
 
+    /**
+     * Returns the entities of the tile group that should be updated, applying sleep changes since the last call.
+     * Changes only take effect here, so that entities falling asleep or waking up during an update do not reorder it.
+     */
+    public static Array<TileEntity> activeEntities(){
+        for(TileEntity entity : changedEntities){
+            entity.changed = false;
+
+            if(entity.sleeping || !entity.isAdded()){
+                entity.deactivate();
+            }else{
+                entity.activate();
+            }
+        }
+        changedEntities.clear();
+
+        return activeEntities;
+    }
+
+    /** @return amount of entities in the tile group that are asleep. This value is only used for debugging. */
+    public static int sleepingEntities(){
+        return Math.max(tileGroup.size() - activeEntities.size, 0);
+    }
+
     /** Call when nothing is happening to the entity. This increments the internal sleep timer. */
     public void sleep(){
         sleepTime += Time.delta();
         if(!sleeping && sleepTime >= timeToSleep){
-            remove();
             sleeping = true;
-            sleepingEntities++;
+            if(sound != null){
+                sound.stop();
+            }
+            markChanged();
         }
     }
 
     /** Call when this entity is updating. This wakes it up. */
     public void noSleep(){
+        dataChanged();
         sleepTime = 0f;
         if(sleeping){
-            add();
             sleeping = false;
-            sleepingEntities--;
+            markChanged();
         }
     }
 
@@ -112,6 +150,37 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         return sleeping;
     }
 
+    /** Notifies the world that the saved state of this entity may have changed, without its block changing. */
+    protected void dataChanged(){
+        if(world != null && tile != null) world.notifyDataChanged(tile);
+    }
+
+    private void markChanged(){
+        if(!changed){
+            changed = true;
+            changedEntities.add(this);
+        }
+    }
+
+    private void activate(){
+        if(activeIndex != -1) return;
+
+        activeIndex = activeEntities.size;
+        activeEntities.add(this);
+    }
+
+    /** Removes this entity from the active entities in O(1), by moving the last one into its place. */
+    private void deactivate(){
+        if(activeIndex == -1) return;
+
+        TileEntity last = activeEntities.pop();
+        if(last != this){
+            activeEntities.set(activeIndex, last);
+            last.activeIndex = activeIndex;
+        }
+        activeIndex = -1;
+    }
+
     public boolean isDead(){
         return dead || tile.entity != this;
     }
@@ -164,7 +233,16 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
 
         float preHealth = health;
 
-        Call.onTileDamage(tile, health - block.handleDamage(tile, damage));
+        float result = health - block.handleDamage(tile, damage);
+
+        if(Net.server()){
+            //clients recieve the health of damaged tiles in bulk, once per sync
+            onTileDamage(tile, result);
+            netServer.tileHealth.mark(tile);
+            dataChanged();
+        }else{
+            Call.onTileDamage(tile, result);
+        }
 
         if(health <= 0){
             Call.onTileDestroyed(tile);
@@ -230,8 +308,17 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         return proximity;
     }
 
+    @Override
+    public void added(){
+        if(!sleeping){
+            activate();
+        }
+    }
+
     @Override
     public void removed(){
+        deactivate();
+
         if(sound != null){
             sound.stop();
         }
@@ -240,6 +327,7 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
     @Override
     public void health(float health){
         this.health = health;
+        dataChanged();
     }
 
     @Override
@@ -280,8 +368,35 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         return Vector2.ZERO;
     }
 
+    @Override
+    public void updateParallel(){
+        block.updateParallel(tile);
+    }
+
     @Override
     public void update(){
+        if(!updateState()){
+            return; //no need to update anymore
+        }
+
+        Block previous = block;
+        block.update(tile);
+        if(block == previous && cons != null){
+            cons.update();
+        }
+
+        if(block == previous && power != null){
+            power.graph.update();
+        }
+    }
+
+    /**
+     * Updates the overdrive, death and sounds of this entity, without updating its block.
+     * Blocks that update sleeping entities themselves call this for them.
+     * @return false if the entity died, in which case it should not be updated any further.
+     */
+    public boolean updateState(){
+        dataChanged();
         timeScaleDuration -= Time.delta();
         if(timeScaleDuration <= 0f || !block.canOverdrive){
             timeScale = 1f;
@@ -289,7 +404,7 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
 
         if(health <= 0){
             onDeath();
-            return; //no need to update anymore
+            return false;
         }
 
         if(sound != null){
@@ -299,16 +414,7 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         if(block.idleSound != Sounds.none && block.shouldIdleSound(tile)){
             loops.play(block.idleSound, this, block.idleSoundVolume);
         }
-
-        Block previous = block;
-        block.update(tile);
-        if(block == previous && cons != null){
-            cons.update();
-        }
-
-        if(block == previous && power != null){
-            power.graph.update();
-        }
+        return true;
     }
 
     @Override
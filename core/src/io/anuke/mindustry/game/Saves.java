@@ -4,6 +4,7 @@ import io.anuke.arc.Core;
 import io.anuke.arc.Events;
 import io.anuke.arc.collection.*;
 import io.anuke.arc.files.FileHandle;
+import io.anuke.arc.function.Consumer;
 import io.anuke.arc.util.*;
 import io.anuke.mindustry.core.GameState.State;
 import io.anuke.mindustry.game.EventType.StateChangeEvent;
@@ -75,16 +76,11 @@ public class Saves{
         if(!state.is(State.menu) && !state.gameOver && current != null && current.isAutosave() && !state.rules.tutorial){
             time += Time.delta();
             if(time > Core.settings.getInt("saveinterval") * 60){
-                saving = true;
-
-                Time.runTask(2f, () -> {
-                    try{
-                        current.save();
-                    }catch(Exception e){
-                        e.printStackTrace();
-                    }
-                    saving = false;
-                });
+                //don't start another autosave while the last one is still being written
+                if(!saving){
+                    saving = true;
+                    current.saveAsync(error -> saving = false);
+                }
 
                 time = 0;
             }
@@ -193,6 +189,23 @@ public class Saves{
             totalPlaytime = prev;
         }
 
+        /**
+         * Saves without blocking the game, see {@link SaveIO#saveToSlotAsync(int, Consumer)}.
+         * @param done called on the main thread once the save is written, with the exception that occurred, or null.
+         */
+        public void saveAsync(Consumer<Throwable> done){
+            SaveIO.saveToSlotAsync(index, error -> {
+                if(error == null){
+                    meta = SaveIO.getMeta(index);
+                }
+                done.accept(error);
+            });
+
+            if(!state.is(State.menu)){
+                current = this;
+            }
+        }
+
         public boolean isHidden(){
             return getZone() != null;
         }
@@ -0,0 +1,165 @@
+package io.anuke.mindustry.game;
+
+import io.anuke.arc.function.BiConsumer;
+import io.anuke.arc.function.Consumer;
+
+/**
+ * Runs delayed tasks in game time, like {@link io.anuke.arc.util.Time#run(float, Runnable)}.
+ * Tasks are kept in a hierarchical timer wheel with one tick resolution, so scheduling and running a task is O(1),
+ * and task objects are pooled. Pass the target and a reused action instead of a new lambda to avoid allocating at all.
+ */
+@SuppressWarnings("unchecked")
+public class Scheduler{
+    /** Bits of the slot index of each level. */
+    private static final int slotBits = 6;
+    private static final int slots = 1 << slotBits, slotMask = slots - 1;
+    private static final int levels = 4;
+    /** Tasks further in the future than this are placed in the last slot, and placed again once they are reached. */
+    private static final long maxDelay = (1L << (slotBits * levels)) - 1;
+
+    private final Task[] wheel = new Task[levels * slots];
+    private Task freeTasks;
+    private long tick;
+    private double time;
+    private int size;
+
+    /** Runs this task after the specified amount of ticks. */
+    public void run(float delay, Runnable runnable){
+        schedule(delay).runnable = runnable;
+    }
+
+    /** Runs this action with the target after the specified amount of ticks. Doesn't allocate, as long as the action is reused. */
+    public <T> void run(float delay, T target, Consumer<T> action){
+        Task task = schedule(delay);
+        task.target = target;
+        task.consumer = action;
+    }
+
+    /** Runs this action with the target and argument after the specified amount of ticks. Doesn't allocate, as long as the action is reused. */
+    public <T, A> void run(float delay, T target, A arg, BiConsumer<T, A> action){
+        Task task = schedule(delay);
+        task.target = target;
+        task.arg = arg;
+        task.action = action;
+    }
+
+    /** Advances time, running every task that is due. Tasks run during the first update that reaches their whole tick. */
+    public void update(float delta){
+        time += delta;
+
+        while(tick < (long)time){
+            tick++;
+
+            //move tasks of higher levels down once their time comes up, starting with the highest
+            for(int level = levels - 1; level > 0; level--){
+                if((tick & ((1L << (slotBits * level)) - 1)) == 0){
+                    cascade(level);
+                }
+            }
+
+            int index = (int)(tick & slotMask);
+            Task task = wheel[index];
+            wheel[index] = null;
+
+            while(task != null){
+                Task next = task.next;
+                execute(task);
+                task = next;
+            }
+        }
+    }
+
+    /** Removes all tasks without running them. */
+    public void clear(){
+        for(int i = 0; i < wheel.length; i++){
+            Task task = wheel[i];
+            while(task != null){
+                Task next = task.next;
+                free(task);
+                task = next;
+            }
+            wheel[i] = null;
+        }
+        size = 0;
+    }
+
+    /** @return amount of tasks waiting to run. */
+    public int size(){
+        return size;
+    }
+
+    private Task schedule(float delay){
+        Task task = freeTasks == null ? new Task() : freeTasks;
+        freeTasks = task.next;
+        task.next = null;
+
+        //tasks never run during the tick they were scheduled in
+        task.due = Math.max((long)Math.ceil(time + delay), tick + 1);
+        place(task);
+        size++;
+        return task;
+    }
+
+    private void place(Task task){
+        long delay = Math.min(task.due - tick, maxDelay);
+        long due = tick + delay;
+
+        int level = 0;
+        while(level < levels - 1 && delay >= (1L << (slotBits * (level + 1)))){
+            level++;
+        }
+
+        int index = level * slots + (int)((due >> (slotBits * level)) & slotMask);
+        task.next = wheel[index];
+        wheel[index] = task;
+    }
+
+    private void cascade(int level){
+        int index = level * slots + (int)((tick >> (slotBits * level)) & slotMask);
+        Task task = wheel[index];
+        wheel[index] = null;
+
+        while(task != null){
+            Task next = task.next;
+            place(task);
+            task = next;
+        }
+    }
+
+    private void execute(Task task){
+        Runnable runnable = task.runnable;
+        Consumer consumer = task.consumer;
+        BiConsumer action = task.action;
+        Object target = task.target, arg = task.arg;
+
+        //free the task first, so that the pool can be reused by tasks scheduled while running
+        free(task);
+        size--;
+
+        if(runnable != null){
+            runnable.run();
+        }else if(consumer != null){
+            consumer.accept(target);
+        }else{
+            action.accept(target, arg);
+        }
+    }
+
+    private void free(Task task){
+        task.runnable = null;
+        task.consumer = null;
+        task.action = null;
+        task.target = task.arg = null;
+        task.next = freeTasks;
+        freeTasks = task;
+    }
+
+    private static class Task{
+        Task next;
+        long due;
+        Runnable runnable;
+        Consumer consumer;
+        BiConsumer action;
+        Object target, arg;
+    }
+}
@@ -19,6 +19,11 @@ public class Version{
     public static int build = 0;
     /** Revision number. Used for hotfixes. Does not affect server compatibility. */
     public static int revision = 0;
+    /**
+     * Version of the network protocol. Increment whenever the format of packets or remote calls changes.
+     * Unlike the build number, this is also checked for custom builds.
+     */
+    public static final int protocol = 1;
     /** Whether version loading is enabled. */
     public static boolean enabled = true;
 
@@ -0,0 +1,44 @@
+package io.anuke.mindustry.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/** Reads the remaining bytes of a buffer, advancing its position. The buffer can be swapped to reuse the stream. */
+public class ByteBufferInput extends InputStream{
+    private ByteBuffer buffer;
+
+    public ByteBufferInput(ByteBuffer buffer){
+        this.buffer = buffer;
+    }
+
+    public void setBuffer(ByteBuffer buffer){
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read(){
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length){
+        if(length == 0) return 0;
+        if(!buffer.hasRemaining()) return -1;
+
+        int read = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long amount){
+        int skipped = (int)Math.max(Math.min(amount, buffer.remaining()), 0);
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available(){
+        return buffer.remaining();
+    }
+}
@@ -1,18 +1,21 @@
 package io.anuke.mindustry.io;
 
+import io.anuke.arc.Files.FileType;
 import io.anuke.arc.collection.*;
 import io.anuke.arc.files.*;
 import io.anuke.arc.graphics.*;
 import io.anuke.arc.graphics.Pixmap.*;
+import io.anuke.arc.util.*;
 import io.anuke.arc.util.io.*;
 import io.anuke.mindustry.content.*;
 import io.anuke.mindustry.game.*;
+import io.anuke.mindustry.io.versions.Save3;
 import io.anuke.mindustry.maps.*;
 import io.anuke.mindustry.world.*;
 import io.anuke.mindustry.world.blocks.storage.*;
 
 import java.io.*;
-import java.util.zip.*;
+import java.nio.channels.FileChannel;
 
 import static io.anuke.mindustry.Vars.*;
 
@@ -35,7 +38,7 @@ public class MapIO{
     }
 
     public static Map createMap(FileHandle file, boolean custom) throws IOException{
-        try(InputStream is = new InflaterInputStream(file.read(bufferSize)); CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
+        try(InputStream is = SaveIO.openMeta(file); CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
             SaveIO.readHeader(stream);
             int version = stream.readInt();
             SaveVersion ver = SaveIO.getSaveWriter(version);
@@ -53,6 +56,40 @@ public class MapIO{
         }
     }
 
+    /**
+     * Returns an uncompressed copy of the map file, which loads much faster since it is read straight from memory.
+     * The copy is made once and replaced when the map file changes. If it can't be made, the map file itself is returned.
+     * See {@link SaveIO#loadMapped(FileHandle, WorldContext)}.
+     */
+    public static FileHandle uncompressedFile(Map map){
+        FileHandle file = map.file;
+        //older versions can't be copied, and maps of unknown version may not be valid
+        if(map.version < 2) return file;
+
+        //copies are named after the path of the map, followed by its state
+        String prefix = file.nameWithoutExtension() + "-" + Integer.toHexString(file.path().hashCode()) + "-";
+        String state = Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified());
+        FileHandle directory = tmpDirectory.child("maps/");
+        FileHandle copy = directory.child(prefix + state + "." + mapExtension);
+
+        try{
+            if(!copy.exists()){
+                SaveIO.writeUncompressed(file, copy);
+
+                //copies of older states of the map are never used again
+                for(FileHandle other : directory.list()){
+                    if(other.name().startsWith(prefix) && !other.equals(copy)){
+                        other.delete();
+                    }
+                }
+            }
+            return copy;
+        }catch(Exception e){
+            Log.err("Failed to copy map '{0}' uncompressed: {1}", file.name(), e);
+            return file;
+        }
+    }
+
     public static void loadMap(Map map){
         SaveIO.load(map.file);
     }
@@ -65,63 +102,68 @@ public class MapIO{
         map.spawns = 0;
         map.teams.clear();
 
-        try(InputStream is = new InflaterInputStream(map.file.read(bufferSize)); CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
-            SaveIO.readHeader(stream);
-            int version = stream.readInt();
-            SaveVersion ver = SaveIO.getSaveWriter(version);
-            ver.region("meta", stream, counter, ver::readStringMap);
-
-            Pixmap floors = new Pixmap(map.width, map.height, Format.RGBA8888);
-            Pixmap walls = new Pixmap(map.width, map.height, Format.RGBA8888);
-            int black = Color.rgba8888(Color.BLACK);
-            int shade = Color.rgba8888(0f, 0f, 0f, 0.5f);
-            CachedTile tile = new CachedTile(){
-                @Override
-                public void setBlock(Block type){
-                    super.setBlock(type);
-                    int c = colorFor(Blocks.air, block(), Blocks.air, getTeam());
-                    if(c != black){
-                        walls.drawPixel(x, floors.getHeight() - 1 - y, c);
-                        floors.drawPixel(x, floors.getHeight() - 1 - y + 1, shade);
-                    }
+        Pixmap floors = new Pixmap(map.width, map.height, Format.RGBA8888);
+        Pixmap walls = new Pixmap(map.width, map.height, Format.RGBA8888);
+        int black = Color.rgba8888(Color.BLACK);
+        int shade = Color.rgba8888(0f, 0f, 0f, 0.5f);
+        CachedTile tile = new CachedTile(){
+            @Override
+            public void setBlock(Block type){
+                super.setBlock(type);
+                int c = colorFor(Blocks.air, block(), Blocks.air, getTeam());
+                if(c != black){
+                    walls.drawPixel(x, floors.getHeight() - 1 - y, c);
+                    floors.drawPixel(x, floors.getHeight() - 1 - y + 1, shade);
                 }
+            }
 
-                @Override
-                public void setTeam(Team team){
-                    super.setTeam(team);
-                    if(block instanceof CoreBlock){
-                        map.teams.add(team.ordinal());
-                    }
+            @Override
+            public void setTeam(Team team){
+                super.setTeam(team);
+                if(block instanceof CoreBlock){
+                    map.teams.add(team.ordinal());
                 }
-            };
-
-            ver.region("content", stream, counter, ver::readContentHeader);
-            ver.region("preview_map", stream, counter, in -> ver.readMap(in, new WorldContext(){
-                @Override public void resize(int width, int height){}
-                @Override public boolean isGenerating(){return false;}
-                @Override public void begin(){}
-                @Override public void end(){}
-
-                @Override
-                public Tile tile(int x, int y){
-                    tile.x = (short)x;
-                    tile.y = (short)y;
-                    return tile;
+            }
+        };
+
+        WorldContext context = new WorldContext(){
+            @Override public void resize(int width, int height){}
+            @Override public boolean isGenerating(){return false;}
+            @Override public void begin(){}
+            @Override public void end(){}
+
+            @Override
+            public Tile tile(int x, int y){
+                tile.x = (short)x;
+                tile.y = (short)y;
+                return tile;
+            }
+
+            @Override
+            public Tile create(int x, int y, int floorID, int overlayID, int wallID){
+                if(overlayID != 0){
+                    floors.drawPixel(x, floors.getHeight() - 1 - y, colorFor(Blocks.air, Blocks.air, content.block(overlayID), Team.derelict));
+                }else{
+                    floors.drawPixel(x, floors.getHeight() - 1 - y, colorFor(content.block(floorID), Blocks.air, Blocks.air, Team.derelict));
+                }
+                if(content.block(overlayID) == Blocks.spawn){
+                    map.spawns ++;
                 }
+                return tile;
+            }
+        };
 
-                @Override
-                public Tile create(int x, int y, int floorID, int overlayID, int wallID){
-                    if(overlayID != 0){
-                        floors.drawPixel(x, floors.getHeight() - 1 - y, colorFor(Blocks.air, Blocks.air, content.block(overlayID), Team.derelict));
-                    }else{
-                        floors.drawPixel(x, floors.getHeight() - 1 - y, colorFor(content.block(floorID), Blocks.air, Blocks.air, Team.derelict));
-                    }
-                    if(content.block(overlayID) == Blocks.spawn){
-                        map.spawns ++;
-                    }
-                    return tile;
+        try{
+            if(!readPreviewRegions(map.file, context)){
+                try(InputStream is = SaveIO.decompress(map.file.read(bufferSize), false); CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
+                    SaveIO.readHeader(stream);
+                    int version = stream.readInt();
+                    SaveVersion ver = SaveIO.getSaveWriter(version);
+                    ver.region("meta", stream, counter, ver::readStringMap);
+                    ver.region("content", stream, counter, ver::readContentHeader);
+                    ver.region("preview_map", stream, counter, in -> ver.readMap(in, context));
                 }
-            }));
+            }
 
             floors.drawPixmap(walls, 0, 0);
             walls.dispose();
@@ -131,6 +173,27 @@ public class MapIO{
         }
     }
 
+    /**
+     * Reads only the content and map regions of a version 3 file, seeking to them with the region table.
+     * @return whether the file could be read this way. Otherwise, nothing was read.
+     */
+    private static boolean readPreviewRegions(FileHandle file, WorldContext context) throws IOException{
+        if(file.type() == FileType.Internal || file.type() == FileType.Classpath) return false;
+
+        try(RandomAccessFile random = new RandomAccessFile(file.file(), "r"); FileChannel channel = random.getChannel()){
+            InputStream header = Save3.readRegion(channel, "content", false);
+            if(header == null) return false;
+
+            SaveVersion ver = SaveIO.getSaveWriter(3);
+            ver.readContentHeader(new DataInputStream(header));
+            ver.readMap(new DataInputStream(Save3.readRegion(channel, "map", false)), context);
+            return true;
+        }catch(FileNotFoundException e){
+            //not a local file; read it as a stream
+            return false;
+        }
+    }
+
     public static Pixmap generatePreview(Tile[][] tiles){
         Pixmap pixmap = new Pixmap(tiles.length, tiles[0].length, Format.RGBA8888);
         for(int x = 0; x < pixmap.getWidth(); x++){
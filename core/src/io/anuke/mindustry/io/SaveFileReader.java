@@ -8,6 +8,7 @@ import io.anuke.arc.util.io.ReusableByteOutStream;
 import io.anuke.mindustry.world.WorldContext;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 public abstract class SaveFileReader{
     protected final ReusableByteOutStream byteOutput = new ReusableByteOutStream();
@@ -30,6 +31,20 @@ public abstract class SaveFileReader{
         }
     }
 
+    /** Reads a region from a buffer that holds only its data, which must be read completely. */
+    protected void region(String name, ByteBuffer buffer, IORunner<DataInput> cons) throws IOException{
+        int length = buffer.remaining();
+        try{
+            cons.accept(new DataInputStream(new ByteBufferInput(buffer)));
+        }catch(Throwable e){
+            throw new IOException("Error reading region \"" + name + "\".", e);
+        }
+
+        if(buffer.hasRemaining()){
+            throw new IOException("Error reading region \"" + name + "\": read length mismatch. Expected: " + length + "; Actual: " + (length - buffer.remaining()));
+        }
+    }
+
     protected void region(String name, DataOutput stream, IORunner<DataOutput> cons) throws IOException{
         try{
             writeChunk(stream, cons);
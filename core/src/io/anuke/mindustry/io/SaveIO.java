@@ -1,15 +1,23 @@
 package io.anuke.mindustry.io;
 
+import io.anuke.arc.Core;
 import io.anuke.arc.collection.*;
+import io.anuke.arc.Files.FileType;
 import io.anuke.arc.files.FileHandle;
-import io.anuke.arc.util.io.CounterInputStream;
-import io.anuke.arc.util.io.FastDeflaterOutputStream;
+import io.anuke.arc.function.Consumer;
+import io.anuke.arc.util.Log;
+import io.anuke.arc.util.async.AsyncExecutor;
+import io.anuke.arc.util.io.*;
 import io.anuke.mindustry.Vars;
 import io.anuke.mindustry.io.versions.Save1;
 import io.anuke.mindustry.io.versions.Save2;
+import io.anuke.mindustry.io.versions.Save3;
 import io.anuke.mindustry.world.WorldContext;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.Arrays;
 import java.util.zip.InflaterInputStream;
 
@@ -19,7 +27,10 @@ public class SaveIO{
     /** Format header. This is the string 'MSAV' in ASCII. */
     public static final byte[] header = {77, 83, 65, 86};
     public static final IntMap<SaveVersion> versions = new IntMap<>();
-    public static final Array<SaveVersion> versionArray = Array.with(new Save1(), new Save2());
+    public static final Array<SaveVersion> versionArray = Array.with(new Save1(), new Save2(), new Save3());
+    /** Compresses and writes saves in the background, in the order they were made. */
+    private static final AsyncExecutor saveExecutor = new AsyncExecutor(1);
+    private static final ReusableByteOutStream snapshotStream = new ReusableByteOutStream();
 
     static{
         for(SaveVersion version : versionArray){
@@ -36,6 +47,9 @@ public class SaveIO{
     }
 
     public static void saveToSlot(int slot){
+        //a pending save to this slot would otherwise replace this one
+        waitForSaves();
+
         FileHandle file = fileFor(slot);
         boolean exists = file.exists();
         if(exists) file.moveTo(backupFileFor(file));
@@ -47,16 +61,164 @@ public class SaveIO{
         }
     }
 
+    /**
+     * Saves to a slot without blocking the game. See {@link #writeAsync(FileHandle, StringMap, Consumer)}.
+     * @param done called on the main thread once the save is written, with the exception that occurred, or null.
+     */
+    public static void saveToSlotAsync(int slot, Consumer<Throwable> done){
+        writeAsync(fileFor(slot), null, done);
+    }
+
+    /**
+     * Writes the game state to memory immediately, so that it is consistent, and then compresses it to the file
+     * on a background thread. The file is only replaced once it is written completely, and the previous file
+     * becomes the backup.
+     * @param done called on the main thread once the save is written, with the exception that occurred, or null.
+     */
+    public static void writeAsync(FileHandle file, StringMap tags, Consumer<Throwable> done){
+        byte[] snapshot = snapshot(tags);
+
+        saveExecutor.submit(() -> {
+            Throwable error = null;
+            try{
+                writeSnapshot(file, snapshot);
+            }catch(Throwable e){
+                Log.err(e);
+                error = e;
+            }
+
+            Throwable result = error;
+            if(done != null){
+                Core.app.post(() -> done.accept(result));
+            }
+            return null;
+        });
+    }
+
+    /** Blocks until every save that was started with {@link #writeAsync(FileHandle, StringMap, Consumer)} is written. */
+    public static void waitForSaves(){
+        saveExecutor.submit(() -> null).get();
+    }
+
+    /** @return the uncompressed save data of the current game state. */
+    private static byte[] snapshot(StringMap tags){
+        writeRegions(tags);
+        return snapshotStream.toByteArray();
+    }
+
+    /** Writes the regions of the current game state to the snapshot stream, without the header. */
+    private static void writeRegions(StringMap tags){
+        try{
+            snapshotStream.reset();
+            DataOutputStream stream = new DataOutputStream(snapshotStream);
+            getVersion().write(stream, tags == null ? new StringMap() : tags);
+            stream.flush();
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Writes the header and the regions, in chunks that are compressed if specified. See {@link Save3}. */
+    private static void writeData(OutputStream os, byte[] data, int length, boolean compress) throws IOException{
+        try(DataOutputStream stream = new DataOutputStream(os)){
+            stream.write(header);
+            stream.writeInt(getVersion().version);
+            Save3.writeRegions(stream, data, length, header.length + 4, compress);
+        }
+    }
+
+    private static void writeSnapshot(FileHandle file, byte[] snapshot) throws IOException{
+        FileHandle temp = file.sibling(file.name() + "-temp." + file.extension());
+
+        try(OutputStream out = temp.write(false, bufferSize)){
+            writeData(out, snapshot, snapshot.length, true);
+        }catch(IOException e){
+            temp.delete();
+            throw e;
+        }
+
+        if(file.exists()) file.moveTo(backupFileFor(file));
+        temp.moveTo(file);
+    }
+
     public static void loadFromSlot(int slot) throws SaveException{
+        waitForSaves();
         load(fileFor(slot));
     }
 
     public static DataInputStream getSlotStream(int slot){
-        return new DataInputStream(new InflaterInputStream(fileFor(slot).read(bufferSize)));
+        return openMeta(fileFor(slot));
     }
 
     public static DataInputStream getBackupSlotStream(int slot){
-        return new DataInputStream(new InflaterInputStream(backupFileFor(fileFor(slot)).read(bufferSize)));
+        return openMeta(backupFileFor(fileFor(slot)));
+    }
+
+    /**
+     * Returns a stream of a save or map file that starts with its header and meta region, but may end right after them.
+     * Meta of version 3 files is not compressed, so it is read with a single small read instead of decompressing the file.
+     */
+    public static DataInputStream openMeta(FileHandle file){
+        if(file.type() != FileType.Internal && file.type() != FileType.Classpath){
+            try(RandomAccessFile random = new RandomAccessFile(file.file(), "r"); FileChannel channel = random.getChannel()){
+                ByteBuffer start = ByteBuffer.allocate(header.length + 8);
+                readFully(channel, start);
+
+                byte[] bytes = new byte[header.length];
+                start.get(bytes);
+                int version = start.getInt();
+
+                if(Arrays.equals(bytes, header) && version >= 3){
+                    ByteBuffer meta = ByteBuffer.allocate(header.length + 8 + start.getInt());
+                    readFully(channel, meta);
+                    return new DataInputStream(new ByteArrayInputStream(meta.array()));
+                }
+            }catch(IOException e){
+                //not a file that can be read directly; try reading it as a stream
+            }
+        }
+
+        return open(file);
+    }
+
+    /** Fills the buffer with data from the start of the channel, and flips it. */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException{
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer, buffer.position()) < 0){
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Returns the data of a save or map file, starting with its header.
+     * Files before version 3 are compressed as a whole, while later ones start with an uncompressed header and meta,
+     * followed by regions that are compressed in chunks. See {@link Save3}.
+     * @param parallel whether to decompress every chunk in parallel right away, which is faster when reading everything.
+     */
+    public static InputStream decompress(InputStream is, boolean parallel) throws IOException{
+        InputStream input = is.markSupported() ? is : new BufferedInputStream(is);
+        input.mark(1);
+        int first = input.read();
+        input.reset();
+
+        if(first != header[0]){
+            return new InflaterInputStream(input);
+        }
+
+        //pass on the header, so that the data can be read like that of older versions
+        byte[] start = new byte[header.length + 4];
+        new DataInputStream(input).readFully(start);
+        return new SequenceInputStream(new ByteArrayInputStream(start), Save3.readRegions(input, parallel));
+    }
+
+    private static DataInputStream open(FileHandle file){
+        try{
+            return new DataInputStream(decompress(file.read(bufferSize), false));
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
     }
 
     public static boolean isSaveValid(int slot){
@@ -70,7 +232,7 @@ public class SaveIO{
 
     public static boolean isSaveValid(FileHandle file){
         try{
-            return isSaveValid(new DataInputStream(new InflaterInputStream(file.read(bufferSize))));
+            return isSaveValid(openMeta(file));
         }catch(Exception e){
             return false;
         }
@@ -116,27 +278,69 @@ public class SaveIO{
     }
 
     public static void write(FileHandle file, StringMap tags){
-        write(new FastDeflaterOutputStream(file.write(false, bufferSize)), tags);
+        write(file, tags, true);
+    }
+
+    /**
+     * Writes the current game state to the file.
+     * @param compress whether to compress it. Uncompressed files take more space, but are loaded straight from memory.
+     */
+    public static void write(FileHandle file, StringMap tags, boolean compress){
+        write(file.write(false, bufferSize), tags, compress);
     }
 
     public static void write(FileHandle file){
         write(file, null);
     }
 
+    /** Writes the current game state to the stream, compressing it. */
     public static void write(OutputStream os, StringMap tags){
-        try(DataOutputStream stream = new DataOutputStream(os)){
-            stream.write(header);
-            stream.writeInt(getVersion().version);
-            if(tags == null){
-                getVersion().write(stream);
-            }else{
-                getVersion().write(stream, tags);
-            }
+        write(os, tags, true);
+    }
+
+    public static void write(OutputStream os, StringMap tags, boolean compress){
+        writeRegions(tags);
+        try{
+            writeData(os, snapshotStream.getBytes(), snapshotStream.size(), compress);
         }catch(Exception e){
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Writes an uncompressed copy of a save or map file, without loading it. The copy is loaded straight from memory,
+     * which is much faster for large maps.
+     * @throws IOException if the file is invalid, or its version is too old to be copied.
+     */
+    public static void writeUncompressed(FileHandle file, FileHandle target) throws IOException{
+        byte[] data;
+        try(DataInputStream stream = new DataInputStream(decompress(file.read(bufferSize), true))){
+            readHeader(stream);
+            int version = stream.readInt();
+            //regions of older versions are laid out differently
+            if(version < 2){
+                throw new IOException("Save version " + version + " can't be copied.");
+            }
+
+            ByteArrayOutputStream regions = new ByteArrayOutputStream();
+            byte[] buffer = new byte[bufferSize];
+            int read;
+            while((read = stream.read(buffer)) != -1){
+                regions.write(buffer, 0, read);
+            }
+            data = regions.toByteArray();
+        }
+
+        FileHandle temp = target.sibling(target.name() + "-temp." + target.extension());
+        try(OutputStream out = temp.write(false, bufferSize)){
+            writeData(out, data, data.length, false);
+        }catch(IOException e){
+            temp.delete();
+            throw e;
+        }
+        temp.moveTo(target);
+    }
+
     public static void load(FileHandle file) throws SaveException{
         load(file, world.context);
     }
@@ -144,21 +348,21 @@ public class SaveIO{
     public static void load(FileHandle file, WorldContext context) throws SaveException{
         try{
             //try and load; if any exception at all occurs
-            load(new InflaterInputStream(file.read(bufferSize)), context);
+            load(file.read(bufferSize), context);
         }catch(SaveException e){
             e.printStackTrace();
             FileHandle backup = file.sibling(file.name() + "-backup." + file.extension());
             if(backup.exists()){
-                load(new InflaterInputStream(backup.read(bufferSize)), context);
+                load(backup.read(bufferSize), context);
             }else{
                 throw new SaveException(e.getCause());
             }
         }
     }
 
-    /** Loads from a deflated (!) input stream.*/
+    /** Loads from the stream of a save file. See {@link #decompress(InputStream, boolean)}. */
     public static void load(InputStream is, WorldContext context) throws SaveException{
-        try(CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
+        try(CounterInputStream counter = new CounterInputStream(decompress(is, true)); DataInputStream stream = new DataInputStream(counter)){
             logic.reset();
             readHeader(stream);
             int version = stream.readInt();
@@ -172,6 +376,43 @@ public class SaveIO{
         }
     }
 
+    /**
+     * Loads a copy made with {@link #writeUncompressed(FileHandle, FileHandle)} by mapping it into memory, so that the
+     * map is read straight from the buffer. See {@link Save3#storedRegions(ByteBuffer)}.
+     * Files with compressed chunks are loaded as a stream instead, without being mapped. Mapped files can't be moved
+     * or deleted on some platforms until the mapping is garbage collected, so only use this for files that are never written.
+     * @return whether the file was mapped.
+     */
+    public static boolean loadMapped(FileHandle file, WorldContext context) throws SaveException{
+        ByteBuffer buffer = null;
+        if(file.type() != FileType.Internal && file.type() != FileType.Classpath){
+            try(RandomAccessFile random = new RandomAccessFile(file.file(), "r"); FileChannel channel = random.getChannel()){
+                if(Save3.isStored(channel)){
+                    //the mapping stays valid once the channel is closed
+                    buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+                }
+            }catch(IOException | IllegalArgumentException e){
+                //not a file that can be mapped; read it as a stream
+            }
+        }
+
+        ByteBuffer[] regions = buffer == null ? null : Save3.storedRegions(buffer);
+        if(regions == null){
+            load(file, context);
+            return false;
+        }
+
+        try{
+            logic.reset();
+            versions.get(buffer.getInt(header.length)).read(regions, context);
+        }catch(Exception e){
+            throw new SaveException(e);
+        }finally{
+            content.setTemporaryMapper(null);
+        }
+        return true;
+    }
+
     public static SaveVersion getVersion(){
         return versionArray.peek();
     }
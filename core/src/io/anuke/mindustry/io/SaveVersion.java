@@ -12,6 +12,7 @@ import io.anuke.mindustry.type.*;
 import io.anuke.mindustry.world.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 import static io.anuke.mindustry.Vars.*;
 
@@ -49,6 +50,29 @@ public abstract class SaveVersion extends SaveFileReader{
         }
     }
 
+    /** Reads the meta, content, map and entity regions from buffers, see {@link io.anuke.mindustry.io.versions.Save3#storedRegions(ByteBuffer)}. */
+    public final void read(ByteBuffer[] regions, WorldContext context) throws IOException{
+        region("meta", regions[0], this::readMeta);
+        region("content", regions[1], this::readContentHeader);
+
+        try{
+            ByteBuffer map = regions[2];
+            int length = map.remaining();
+            try{
+                readMap(map, context);
+            }catch(Throwable e){
+                throw new IOException("Error reading region \"map\".", e);
+            }
+            if(map.hasRemaining()){
+                throw new IOException("Error reading region \"map\": read length mismatch. Expected: " + length + "; Actual: " + (length - map.remaining()));
+            }
+
+            region("entities", regions[3], this::readEntities);
+        }finally{
+            content.setTemporaryMapper(null);
+        }
+    }
+
     public final void write(DataOutputStream stream, StringMap extraTags) throws IOException{
         region("meta", stream, out -> writeMeta(out, extraTags));
         region("content", stream, this::writeContentHeader);
@@ -94,14 +118,22 @@ public abstract class SaveVersion extends SaveFileReader{
         stream.writeShort(world.width());
         stream.writeShort(world.height());
 
-        //floor + overlay
-        for(int i = 0; i < world.width() * world.height(); i++){
+        writeFloors(stream, 0, world.width() * world.height());
+        writeBlocks(stream, 0, world.width() * world.height());
+    }
+
+    /**
+     * Writes floors and overlays of all tiles with an index in [start, end).
+     * Runs of equal tiles never cross the end of the range, so consecutive ranges can be written separately.
+     */
+    public void writeFloors(DataOutput stream, int start, int end) throws IOException{
+        for(int i = start; i < end; i++){
             Tile tile = world.rawTile(i % world.width(), i / world.width());
             stream.writeShort(tile.floorID());
             stream.writeShort(tile.overlayID());
             int consecutives = 0;
 
-            for(int j = i + 1; j < world.width() * world.height() && consecutives < 255; j++){
+            for(int j = i + 1; j < end && consecutives < 255; j++){
                 Tile nextTile = world.rawTile(j % world.width(), j / world.width());
 
                 if(nextTile.floorID() != tile.floorID() || nextTile.overlayID() != tile.overlayID()){
@@ -114,9 +146,11 @@ public abstract class SaveVersion extends SaveFileReader{
             stream.writeByte(consecutives);
             i += consecutives;
         }
+    }
 
-        //blocks
-        for(int i = 0; i < world.width() * world.height(); i++){
+    /** Writes blocks and tile entities of all tiles with an index in [start, end). See {@link #writeFloors(DataOutput, int, int)}. */
+    public void writeBlocks(DataOutput stream, int start, int end) throws IOException{
+        for(int i = start; i < end; i++){
             Tile tile = world.rawTile(i % world.width(), i / world.width());
             stream.writeShort(tile.blockID());
 
@@ -129,7 +163,7 @@ public abstract class SaveVersion extends SaveFileReader{
                 //write consecutive non-entity blocks
                 int consecutives = 0;
 
-                for(int j = i + 1; j < world.width() * world.height() && consecutives < 255; j++){
+                for(int j = i + 1; j < end && consecutives < 255; j++){
                     Tile nextTile = world.rawTile(j % world.width(), j / world.width());
 
                     if(nextTile.blockID() != tile.blockID()){
@@ -205,6 +239,71 @@ public abstract class SaveVersion extends SaveFileReader{
         }
     }
 
+    /**
+     * Reads the map region like {@link #readMap(DataInput, WorldContext)}, but straight from a buffer,
+     * which is much faster than going through a stream for large maps.
+     */
+    public void readMap(ByteBuffer buffer, WorldContext context) throws IOException{
+        int width = buffer.getShort() & 0xffff;
+        int height = buffer.getShort() & 0xffff;
+
+        boolean generating = context.isGenerating();
+
+        if(!generating) context.begin();
+        try{
+
+            context.resize(width, height);
+
+            //read floor and create tiles first
+            for(int i = 0; i < width * height; i++){
+                short floorid = buffer.getShort();
+                short oreid = buffer.getShort();
+                int consecutives = buffer.get() & 0xff;
+
+                for(int j = i; j < i + 1 + consecutives; j++){
+                    context.create(j % width, j / width, floorid, oreid, (short)0);
+                }
+
+                i += consecutives;
+            }
+
+            //tile entities are read from a slice of the buffer, through a reused stream
+            ByteBufferInput entityInput = new ByteBufferInput(buffer);
+            DataInputStream entityStream = new DataInputStream(entityInput);
+
+            //read blocks
+            for(int i = 0; i < width * height; i++){
+                Block block = content.block(buffer.getShort());
+                Tile tile = context.tile(i % width, i / width);
+                tile.setBlock(block);
+
+                if(tile.entity != null){
+                    int length = buffer.getShort() & 0xffff;
+                    ByteBuffer chunk = buffer.slice();
+                    chunk.limit(length);
+                    entityInput.setBuffer(chunk);
+                    try{
+                        byte version = entityStream.readByte();
+                        tile.entity.read(entityStream, version);
+                    }catch(Exception e){
+                        throw new IOException("Failed to read tile entity of block: " + block, e);
+                    }
+                    buffer.position(buffer.position() + length);
+                }else{
+                    int consecutives = buffer.get() & 0xff;
+
+                    for(int j = i + 1; j < i + 1 + consecutives; j++){
+                        context.tile(j % width, j / width).setBlock(block);
+                    }
+
+                    i += consecutives;
+                }
+            }
+        }finally{
+            if(!generating) context.end();
+        }
+    }
+
     public void writeEntities(DataOutput stream) throws IOException{
         //write entity chunk
         int groups = 0;
@@ -0,0 +1,512 @@
+package io.anuke.mindustry.io.versions;
+
+import io.anuke.mindustry.io.SaveIO;
+import io.anuke.mindustry.io.SaveVersion;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Same regions as version 2, but the file is no longer compressed as a whole.
+ * The header, version and meta region are uncompressed, so meta can be read with one small read.
+ * They are followed by a table with the name, length and file offset of every other region.
+ * Each of those regions is split into chunks that are compressed independently, preceded by an index of their
+ * compressed and uncompressed lengths, so that chunks can be compressed and decompressed in parallel,
+ * and regions that aren't needed never have to be decompressed.
+ * Chunks with equal lengths are stored uncompressed. Files with only stored chunks can be read straight from memory,
+ * see {@link #storedRegions(ByteBuffer)}. Single regions can be read without the rest of the file, see
+ * {@link #readRegion(FileChannel, String, boolean)}.
+ */
+public class Save3 extends SaveVersion{
+    /** Uncompressed size of a chunk. The map and entities of large maps span multiple chunks. */
+    private static final int chunkSize = 128 * 1024;
+    /** Regions after the meta region, in the order they are written in by {@link SaveVersion}. */
+    private static final String[] regions = {"content", "map", "entities"};
+    private static ForkJoinPool pool;
+
+    public Save3(){
+        super(3);
+    }
+
+    /**
+     * Writes the regions of a save in this format.
+     * @param data regions as written by {@link SaveVersion#write(DataOutputStream, io.anuke.arc.collection.StringMap)}, each prefixed with its length.
+     * @param offset file offset that the stream is at.
+     * @param compress whether to compress chunks. Otherwise, they are stored as they are.
+     */
+    public static void writeRegions(DataOutputStream stream, byte[] data, int length, long offset, boolean compress) throws IOException{
+        int metaLength = readInt(data, 0);
+        stream.writeInt(metaLength);
+        stream.write(data, 4, metaLength);
+
+        int position = 4 + metaLength;
+        int[] lengths = new int[regions.length];
+        byte[][][] chunks = new byte[regions.length][][];
+        for(int i = 0; i < regions.length; i++){
+            lengths[i] = readInt(data, position);
+            chunks[i] = compressChunks(data, position + 4, lengths[i], compress);
+            position += 4 + lengths[i];
+        }
+
+        if(position != length){
+            throw new IOException("Unexpected region data length: " + length + " != " + position);
+        }
+
+        //offset of the first region is after the table
+        long regionOffset = offset + 4 + metaLength + 1;
+        for(String name : regions){
+            regionOffset += 2 + name.length() + 4 + 8;
+        }
+
+        stream.writeByte(regions.length);
+        for(int i = 0; i < regions.length; i++){
+            stream.writeUTF(regions[i]);
+            stream.writeInt(lengths[i]);
+            stream.writeLong(regionOffset);
+            regionOffset += 4 + chunks[i].length * 8;
+            for(byte[] chunk : chunks[i]){
+                regionOffset += chunk.length;
+            }
+        }
+
+        for(int i = 0; i < regions.length; i++){
+            writeChunks(stream, chunks[i], lengths[i]);
+        }
+    }
+
+    /**
+     * Reads regions written with {@link #writeRegions(DataOutputStream, byte[], int, long, boolean)}, in the same layout as
+     * older versions. Regions are only read once they are reached, so the rest of the input is never read if reading
+     * stops before the end.
+     * @param parallel whether to decompress every chunk of a region in parallel once it is reached. Otherwise, chunks are
+     * decompressed one by one as they are reached, which is faster when only the start of a region is needed.
+     */
+    public static InputStream readRegions(InputStream input, boolean parallel) throws IOException{
+        DataInputStream stream = new DataInputStream(input);
+        int metaLength = stream.readInt();
+        byte[] meta = new byte[4 + metaLength];
+        writeInt(meta, 0, metaLength);
+        stream.readFully(meta, 4, metaLength);
+
+        int count = stream.readUnsignedByte();
+        int[] lengths = new int[count];
+        for(int i = 0; i < count; i++){
+            stream.readUTF();
+            lengths[i] = stream.readInt();
+            stream.readLong();
+        }
+
+        Enumeration<InputStream> streams = new Enumeration<InputStream>(){
+            int region = -1;
+
+            @Override
+            public boolean hasMoreElements(){
+                return region < count * 2;
+            }
+
+            @Override
+            public InputStream nextElement(){
+                region++;
+                if(region == 0) return new ByteArrayInputStream(meta);
+
+                //every region is its length, followed by its data
+                int index = (region - 1) / 2;
+                if(region % 2 == 1){
+                    byte[] length = new byte[4];
+                    writeInt(length, 0, lengths[index]);
+                    return new ByteArrayInputStream(length);
+                }
+
+                try{
+                    return readChunks(stream, parallel);
+                }catch(IOException e){
+                    //rethrown as an IOException by the stream below
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        return new SequenceInputStream(streams){
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException{
+                try{
+                    return super.read(bytes, offset, length);
+                }catch(RuntimeException e){
+                    throw unwrap(e);
+                }
+            }
+
+            @Override
+            public int read() throws IOException{
+                try{
+                    return super.read();
+                }catch(RuntimeException e){
+                    throw unwrap(e);
+                }
+            }
+
+            @Override
+            public void close() throws IOException{
+                super.close();
+                input.close();
+            }
+        };
+    }
+
+    private static IOException unwrap(RuntimeException e){
+        return e.getCause() instanceof IOException ? (IOException)e.getCause() : new IOException(e);
+    }
+
+    /**
+     * Returns the regions of a file that only has stored chunks, as slices of its buffer. The data of a region is
+     * contiguous then, so it can be read straight from the buffer.
+     * @return meta, content, map and entity regions, or null if the file isn't of this version or has compressed chunks.
+     */
+    public static ByteBuffer[] storedRegions(ByteBuffer buffer){
+        try{
+            buffer = buffer.duplicate();
+            byte[] header = new byte[SaveIO.header.length];
+            buffer.get(header);
+            if(!Arrays.equals(header, SaveIO.header) || buffer.getInt() != 3) return null;
+
+            int metaLength = buffer.getInt();
+            ByteBuffer[] result = new ByteBuffer[1 + regions.length];
+            result[0] = slice(buffer, buffer.position(), metaLength);
+            buffer.position(buffer.position() + metaLength);
+
+            int count = buffer.get() & 0xff;
+            if(count != regions.length) return null;
+
+            int[] lengths = new int[count];
+            long[] offsets = new long[count];
+            for(int i = 0; i < count; i++){
+                buffer.position(buffer.position() + (buffer.getShort() & 0xffff));
+                lengths[i] = buffer.getInt();
+                offsets[i] = buffer.getLong();
+            }
+
+            for(int i = 0; i < count; i++){
+                buffer.position((int)offsets[i]);
+                int chunks = buffer.getInt();
+                for(int j = 0; j < chunks; j++){
+                    if(buffer.getInt() != buffer.getInt()) return null;
+                }
+                result[i + 1] = slice(buffer, buffer.position(), lengths[i]);
+            }
+            return result;
+        }catch(RuntimeException e){
+            //truncated or invalid data; reading it as a stream will report the error
+            return null;
+        }
+    }
+
+    /**
+     * Checks with a few small reads whether a file is of this version and only has stored chunks, so that it can be
+     * mapped into memory and read with {@link #storedRegions(ByteBuffer)}.
+     */
+    public static boolean isStored(FileChannel channel) throws IOException{
+        try{
+            long[] offsets = readOffsets(channel);
+            if(offsets == null) return false;
+
+            for(long offset : offsets){
+                ByteBuffer count = read(channel, offset, 4);
+                if(count == null) return false;
+                int chunks = count.getInt();
+
+                ByteBuffer index = read(channel, offset + 4, chunks * 8);
+                if(index == null) return false;
+                for(int j = 0; j < chunks; j++){
+                    if(index.getInt() != index.getInt()) return false;
+                }
+            }
+            return true;
+        }catch(RuntimeException e){
+            //invalid table
+            return false;
+        }
+    }
+
+    /**
+     * Reads a single region of a file of this version, seeking straight to it with the offset in the region table.
+     * Nothing before or after the region is read or decompressed.
+     * @param name name of the region, one of "content", "map" or "entities".
+     * @return the data of the region, without its length, or null if the file isn't of this version.
+     */
+    public static InputStream readRegion(FileChannel channel, String name, boolean parallel) throws IOException{
+        int region = Arrays.asList(regions).indexOf(name);
+        if(region == -1) throw new IllegalArgumentException("Unknown region: " + name);
+
+        try{
+            long[] offsets = readOffsets(channel);
+            if(offsets == null) return null;
+
+            ByteBuffer count = read(channel, offsets[region], 4);
+            if(count == null) return null;
+            int chunks = count.getInt();
+
+            ByteBuffer index = read(channel, offsets[region] + 4, chunks * 8);
+            if(index == null) return null;
+            long length = 4 + chunks * 8L;
+            for(int i = 0; i < chunks; i++){
+                length += index.getInt();
+                index.getInt();
+            }
+
+            ByteBuffer data = length > Integer.MAX_VALUE ? null : read(channel, offsets[region], (int)length);
+            if(data == null) return null;
+            return readChunks(new ByteArrayInputStream(data.array()), parallel);
+        }catch(RuntimeException e){
+            //invalid table
+            return null;
+        }
+    }
+
+    /** @return the file offsets of the regions in the table, or null if the file isn't of this version. */
+    private static long[] readOffsets(FileChannel channel) throws IOException{
+        ByteBuffer start = read(channel, 0, SaveIO.header.length + 8);
+        if(start == null) return null;
+
+        byte[] header = new byte[SaveIO.header.length];
+        start.get(header);
+        if(!Arrays.equals(header, SaveIO.header) || start.getInt() != 3) return null;
+
+        int tableLength = 1;
+        for(String name : regions){
+            tableLength += 2 + name.length() + 4 + 8;
+        }
+
+        ByteBuffer table = read(channel, start.position() + (long)start.getInt(), tableLength);
+        if(table == null || (table.get() & 0xff) != regions.length) return null;
+
+        long[] offsets = new long[regions.length];
+        for(int i = 0; i < regions.length; i++){
+            table.position(table.position() + (table.getShort() & 0xffff) + 4);
+            offsets[i] = table.getLong();
+        }
+        return offsets;
+    }
+
+    /** @return the bytes at this position of the channel, or null if the channel ends before. */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException{
+        if(length < 0 || position < 0 || position + length > channel.size()) return null;
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer, position + buffer.position()) < 0) return null;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length){
+        ByteBuffer result = buffer.duplicate();
+        result.position(position);
+        result.limit(position + length);
+        return result.slice();
+    }
+
+    /** Splits the data into chunks and compresses them in parallel, if needed. */
+    private static byte[][] compressChunks(byte[] data, int offset, int length, boolean compress) throws IOException{
+        int chunks = (length + chunkSize - 1) / chunkSize;
+        byte[][] compressed = new byte[chunks][];
+
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for(int i = 0; i < chunks; i++){
+            int index = i;
+            tasks.add(() -> {
+                int start = offset + index * chunkSize, end = start + Math.min(chunkSize, length - index * chunkSize);
+                if(compress){
+                    compressed[index] = compress(data, start, end - start);
+                }
+
+                //chunks that don't get smaller are stored, which also keeps compressed chunks from having equal lengths
+                if(!compress || compressed[index].length >= end - start){
+                    compressed[index] = Arrays.copyOfRange(data, start, end);
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+        return compressed;
+    }
+
+    /** Writes compressed chunks with their index. */
+    private static void writeChunks(DataOutputStream stream, byte[][] compressed, int length) throws IOException{
+        stream.writeInt(compressed.length);
+        for(int i = 0; i < compressed.length; i++){
+            stream.writeInt(compressed[i].length);
+            stream.writeInt(Math.min(chunkSize, length - i * chunkSize));
+        }
+        for(byte[] chunk : compressed){
+            stream.write(chunk);
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset){
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16) | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value){
+        bytes[offset] = (byte)(value >>> 24);
+        bytes[offset + 1] = (byte)(value >>> 16);
+        bytes[offset + 2] = (byte)(value >>> 8);
+        bytes[offset + 3] = (byte)value;
+    }
+
+    /**
+     * Reads chunks written with {@link #writeChunks(DataOutputStream, byte[][], int)}.
+     * @param parallel whether to decompress every chunk in parallel right away. Otherwise, chunks are only decompressed
+     * once they are reached, which is faster when only the start of the data is needed.
+     */
+    private static InputStream readChunks(InputStream input, boolean parallel) throws IOException{
+        DataInputStream stream = new DataInputStream(input);
+        int chunks = stream.readInt();
+        int[] compressedLengths = new int[chunks], lengths = new int[chunks];
+        for(int i = 0; i < chunks; i++){
+            compressedLengths[i] = stream.readInt();
+            lengths[i] = stream.readInt();
+        }
+
+        ChunkInputStream result = new ChunkInputStream(stream, compressedLengths, lengths);
+
+        if(parallel){
+            byte[][] compressed = new byte[chunks][];
+            for(int i = 0; i < chunks; i++){
+                compressed[i] = new byte[compressedLengths[i]];
+                stream.readFully(compressed[i]);
+            }
+
+            List<Callable<Void>> tasks = new ArrayList<>(chunks);
+            for(int i = 0; i < chunks; i++){
+                int index = i;
+                tasks.add(() -> {
+                    result.chunks[index] = decompress(compressed[index], lengths[index]);
+                    return null;
+                });
+            }
+            invokeAll(tasks);
+        }
+
+        return result;
+    }
+
+    private static void invokeAll(List<Callable<Void>> tasks) throws IOException{
+        //a single chunk isn't worth handing to another thread
+        if(tasks.size() == 1){
+            try{
+                tasks.get(0).call();
+                return;
+            }catch(IOException e){
+                throw e;
+            }catch(Exception e){
+                throw new IOException(e);
+            }
+        }
+
+        try{
+            for(Future<Void> future : pool().invokeAll(tasks)){
+                future.get();
+            }
+        }catch(ExecutionException e){
+            throw e.getCause() instanceof IOException ? (IOException)e.getCause() : new IOException(e.getCause());
+        }catch(InterruptedException e){
+            throw new IOException(e);
+        }
+    }
+
+    private static synchronized ForkJoinPool pool(){
+        if(pool == null){
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
+
+    private static byte[] compress(byte[] data, int offset, int length) throws IOException{
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length / 4);
+        try(DeflaterOutputStream def = new DeflaterOutputStream(out)){
+            def.write(data, offset, length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed, int length) throws IOException{
+        //stored chunk
+        if(compressed.length == length) return compressed;
+
+        Inflater inflater = new Inflater();
+        try{
+            inflater.setInput(compressed);
+            byte[] result = new byte[length];
+            int read = 0;
+            while(read < length){
+                int amount = inflater.inflate(result, read, length - read);
+                if(amount == 0 && (inflater.finished() || inflater.needsInput())){
+                    throw new IOException("Chunk is shorter than its index says: " + read + " < " + length);
+                }
+                read += amount;
+            }
+            return result;
+        }catch(DataFormatException e){
+            throw new IOException(e);
+        }finally{
+            inflater.end();
+        }
+    }
+
+    /** Reads decompressed chunks in order, decompressing the ones that weren't decompressed up front. */
+    private static class ChunkInputStream extends InputStream{
+        final byte[][] chunks;
+        final DataInputStream stream;
+        final int[] compressedLengths, lengths;
+        int chunk = -1, position;
+        byte[] current = {};
+
+        ChunkInputStream(DataInputStream stream, int[] compressedLengths, int[] lengths){
+            this.stream = stream;
+            this.compressedLengths = compressedLengths;
+            this.lengths = lengths;
+            this.chunks = new byte[lengths.length][];
+        }
+
+        /** @return whether there is data left to read. */
+        private boolean advance() throws IOException{
+            while(position >= current.length){
+                if(chunk + 1 >= chunks.length) return false;
+                chunk++;
+
+                if(chunks[chunk] == null){
+                    byte[] compressed = new byte[compressedLengths[chunk]];
+                    stream.readFully(compressed);
+                    chunks[chunk] = decompress(compressed, lengths[chunk]);
+                }
+
+                current = chunks[chunk];
+                //let chunks that were read be collected
+                chunks[chunk] = null;
+                position = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException{
+            return advance() ? current[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException{
+            if(length == 0) return 0;
+            if(!advance()) return -1;
+
+            int amount = Math.min(length, current.length - position);
+            System.arraycopy(current, position, bytes, offset, amount);
+            position += amount;
+            return amount;
+        }
+    }
+}
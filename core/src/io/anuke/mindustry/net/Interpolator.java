@@ -4,6 +4,8 @@ import io.anuke.arc.math.*;
 import io.anuke.arc.math.geom.*;
 import io.anuke.arc.util.*;
 
+import java.util.Arrays;
+
 public class Interpolator{
     //used for movement
     public Vector2 target = new Vector2();
@@ -21,14 +23,21 @@ public class Interpolator{
 
         lastUpdated = Time.millis();
 
+        //the same state twice means the entity has stopped, so hold it there instead of moving past it
+        boolean stopped = target.x == x && target.y == y && Arrays.equals(targets, target1ds);
+
         targets = target1ds;
         if(lasts.length != values.length){
             lasts = new float[values.length];
         }
         for(int i = 0; i < values.length; i++){
-            lasts[i] = values[i];
+            lasts[i] = stopped && i < targets.length ? targets[i] : values[i];
+        }
+        if(stopped){
+            last.set(x, y);
+        }else{
+            last.set(cx, cy);
         }
-        last.set(cx, cy);
         target.set(x, y);
     }
 
@@ -0,0 +1,80 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.function.Consumer;
+import io.anuke.arc.util.io.ReusableByteOutStream;
+import io.anuke.arc.util.pooling.Pools;
+import io.anuke.mindustry.net.Packets.InvokeBatchPacket;
+import io.anuke.mindustry.net.Packets.InvokePacket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Collects the invoke packets sent to a single connection during a tick, so they can be sent as one packet.
+ * Each invoke is framed exactly like a standalone {@link InvokePacket}. Large batches are LZ4-compressed.
+ */
+public class InvokeBatch{
+    /** Maximum size of the uncompressed batch data. Must stay below the object buffer size of clients, even after compression. */
+    private static final int maxSize = 3072;
+    /** Batches smaller than this are never compressed, as the savings would be negligible. */
+    private static final int minCompressSize = 128;
+
+    private final ReusableByteOutStream stream = new ReusableByteOutStream();
+    private final InvokeBatchPacket packet = new InvokeBatchPacket();
+    private final ByteBuffer frame = ByteBuffer.allocate(maxSize);
+
+    /** @return whether this packet can be batched at all. High-priority and oversized packets are always sent immediately. */
+    public static boolean accepts(InvokePacket packet){
+        return !packet.isImportant() && packet.writeLength + 4 <= maxSize;
+    }
+
+    /** @return whether this packet fits into the current batch. If it doesn't, the batch must be sent first. */
+    public boolean fits(InvokePacket packet){
+        return stream.size() + packet.writeLength + 4 <= maxSize;
+    }
+
+    /** Copies a packet into this batch. The packet's buffer is shared by all remote calls, so it can't be kept. */
+    public void add(InvokePacket packet){
+        frame.position(0);
+        packet.write(frame);
+        stream.write(frame.array(), 0, frame.position());
+    }
+
+    public boolean isEmpty(){
+        return stream.size() == 0;
+    }
+
+    /**
+     * Builds a packet from all invokes added since the last call, and clears the batch.
+     * The returned packet is reused, so it must be sent before this method is called again.
+     */
+    public InvokeBatchPacket build(boolean compress){
+        packet.length = stream.size();
+        packet.compressed = false;
+        packet.data = stream.getBytes();
+        packet.dataLength = stream.size();
+
+        if(compress && packet.length >= minCompressSize){
+            byte[] compressed = Net.compressSnapshot(stream.toByteArray());
+            if(compressed.length < packet.length){
+                packet.compressed = true;
+                packet.data = compressed;
+                packet.dataLength = compressed.length;
+            }
+        }
+
+        stream.reset();
+        return packet;
+    }
+
+    /** Reads every invoke packet in a batch, in the order they were added. The packets are obtained from a pool. */
+    public static void read(InvokeBatchPacket batch, Consumer<InvokePacket> cons){
+        byte[] bytes = batch.compressed ? Net.decompressSnapshot(batch.data, batch.length) : batch.data;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, batch.length);
+
+        while(buffer.hasRemaining()){
+            InvokePacket packet = Pools.obtain(InvokePacket.class, InvokePacket::new);
+            packet.read(buffer);
+            cons.accept(packet);
+        }
+    }
+}
@@ -21,6 +21,7 @@ public class Net{
     private static boolean server;
     private static boolean active;
     private static boolean clientLoaded;
+    private static boolean batchInvokes, compressInvokes;
     private static Array<Object> packetQueue = new Array<>();
     private static ObjectMap<Class<?>, Consumer> clientListeners = new ObjectMap<>();
     private static ObjectMap<Class<?>, BiConsumer<Integer, Object>> serverListeners = new ObjectMap<>();
@@ -144,6 +145,36 @@ public class Net{
         active = false;
     }
 
+    /**
+     * Enables or disables batching of invoke packets sent by the server.
+     * Batched packets are only sent once {@link #flushInvokes()} is called, which should happen every tick.
+     */
+    public static void setInvokeBatching(boolean batch, boolean compress){
+        if(batchInvokes && !batch){
+            flushInvokes();
+        }
+        batchInvokes = batch;
+        compressInvokes = compress;
+    }
+
+    public static boolean batchingInvokes(){
+        return batchInvokes;
+    }
+
+    public static boolean compressingInvokes(){
+        return compressInvokes;
+    }
+
+    /**
+     * Sends all batched invoke packets. Server-side only.
+     */
+    public static void flushInvokes(){
+        if(serverProvider == null) return;
+        for(NetConnection con : getConnections()){
+            con.flushInvokes();
+        }
+    }
+
     public static byte[] compressSnapshot(byte[] input){
         return compressor.compress(input);
     }
@@ -253,6 +284,9 @@ public class Net{
                 streams.remove(builder.id);
                 handleClientReceived(builder.build());
             }
+        }else if(object instanceof InvokeBatchPacket){
+            InvokeBatch.read((InvokeBatchPacket)object, Net::handleClientReceived);
+            Pools.free(object);
         }else if(clientListeners.get(object.getClass()) != null){
 
             if(clientLoaded || ((object instanceof Packet) && ((Packet)object).isImportant())){
@@ -378,6 +412,7 @@ public class Net{
         default void sendStream(int id, Streamable stream){
             NetConnection connection = getByID(id);
             if(connection == null) return;
+            connection.flushInvokes();
             try{
                 int cid;
                 StreamBegin begin = new StreamBegin();
@@ -402,7 +437,7 @@ public class Net{
 
         default void send(Object object, SendMode mode){
             for(NetConnection con : getConnections()){
-                con.send(object, mode);
+                con.sendQueued(object, mode);
             }
         }
 
@@ -412,13 +447,13 @@ public class Net{
                 Log.err("Failed to find connection with ID {0}.", id);
                 return;
             }
-            conn.send(object, mode);
+            conn.sendQueued(object, mode);
         }
 
         default void sendExcept(int id, Object object, SendMode mode){
             for(NetConnection con : getConnections()){
                 if(con.id != id){
-                    con.send(object, mode);
+                    con.sendQueued(object, mode);
                 }
             }
         }
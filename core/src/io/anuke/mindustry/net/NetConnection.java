@@ -1,6 +1,7 @@
 package io.anuke.mindustry.net;
 
 import io.anuke.mindustry.net.Net.SendMode;
+import io.anuke.mindustry.net.Packets.InvokePacket;
 
 public abstract class NetConnection{
     private static int lastID;
@@ -20,6 +21,21 @@ public abstract class NetConnection{
     public boolean hasBegunConnecting = false;
     public float viewWidth, viewHeight, viewX, viewY;
 
+    /** Total amount of entity snapshots sent to this connection. Used to schedule full, unculled snapshots. */
+    public int snapshotsSent;
+    /** Amount of entities written and culled in the last entity snapshot. */
+    public int syncedEntities, skippedEntities;
+    /** Amount of entities left out of the last entity snapshot because the client already has their state. */
+    public int unchangedEntities;
+    /** Entity states acknowledged by this client. */
+    public final SnapshotBaseline baseline = new SnapshotBaseline();
+    /** Compressed snapshot bytes sent in the current second, and in the last full second. */
+    public int snapshotBytes, snapshotBytesPerSecond;
+    /** Timestamp of the last snapshot byte measurement. */
+    public long lastSnapshotMeasure;
+    /** Invoke packets waiting to be sent to this connection. */
+    private final InvokeBatch batch = new InvokeBatch();
+
     /** Assigns this connection a unique ID. No two connections will ever have the same ID.*/
     public NetConnection(String address){
         this.id = lastID++;
@@ -32,5 +48,32 @@ public abstract class NetConnection{
 
     public abstract void send(Object object, SendMode mode);
 
+    /**
+     * Sends an object, adding it to the current invoke batch instead if batching is enabled.
+     * Other reliable packets send the batch first, so that packets always arrive in order.
+     */
+    public void sendQueued(Object object, SendMode mode){
+        if(mode == SendMode.tcp && Net.batchingInvokes() && object instanceof InvokePacket && InvokeBatch.accepts((InvokePacket)object)){
+            InvokePacket packet = (InvokePacket)object;
+            if(!batch.fits(packet)){
+                flushInvokes();
+            }
+            batch.add(packet);
+            return;
+        }
+
+        if(mode == SendMode.tcp){
+            flushInvokes();
+        }
+        send(object, mode);
+    }
+
+    /** Sends all batched invoke packets. */
+    public void flushInvokes(){
+        if(!batch.isEmpty()){
+            send(batch.build(Net.compressingInvokes()), SendMode.tcp);
+        }
+    }
+
     public abstract void close();
 }
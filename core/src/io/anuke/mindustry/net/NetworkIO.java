@@ -12,12 +12,14 @@ import io.anuke.mindustry.maps.Map;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
 
 import static io.anuke.mindustry.Vars.*;
 
 public class NetworkIO{
 
-    public static void writeWorld(Player player, OutputStream os){
+    /** Writes the per-player part of the world data. The map itself is written separately by {@link WorldStreamCache}. */
+    public static void writeWorldHeader(Player player, OutputStream os){
 
         try(DataOutputStream stream = new DataOutputStream(os)){
             stream.writeUTF(JsonIO.write(state.rules));
@@ -28,16 +30,20 @@ public class NetworkIO{
 
             stream.writeInt(player.id);
             player.write(stream);
-
-            SaveIO.getSaveWriter().writeMap(stream);
         }catch(IOException e){
             throw new RuntimeException(e);
         }
     }
 
+    /** Loads world data, consisting of the length of the compressed header, the header and the compressed map. */
     public static void loadWorld(InputStream is){
 
-        try(DataInputStream stream = new DataInputStream(is)){
+        try(DataInputStream input = new DataInputStream(is)){
+            byte[] header = new byte[input.readInt()];
+            input.readFully(header);
+
+            DataInputStream stream = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(header)));
+
             Time.clear();
             state.rules = JsonIO.read(Rules.class, stream.readUTF());
             world.setMap(new Map(SaveIO.getSaveWriter().readStringMap(stream)));
@@ -52,7 +58,7 @@ public class NetworkIO{
             player.resetID(id);
             player.add();
 
-            SaveIO.getSaveWriter().readMap(stream, world.context);
+            SaveIO.getSaveWriter().readMap(new DataInputStream(new InflaterInputStream(input)), world.context);
         }catch(IOException e){
             throw new RuntimeException(e);
         }
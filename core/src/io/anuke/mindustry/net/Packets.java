@@ -64,7 +64,7 @@ public class Packets{
     }
 
     public static class ConnectPacket implements Packet{
-        public int version;
+        public int version, protocol;
         public String versionType;
         public String name, uuid, usid;
         public boolean mobile;
@@ -79,6 +79,7 @@ public class Packets{
             buffer.put(mobile ? (byte)1 : 0);
             buffer.putInt(color);
             buffer.put(Base64Coder.decode(uuid));
+            buffer.putInt(Version.protocol);
         }
 
         @Override
@@ -92,6 +93,8 @@ public class Packets{
             byte[] idbytes = new byte[8];
             buffer.get(idbytes);
             uuid = new String(Base64Coder.encode(idbytes));
+            //clients from before the protocol version was sent have none
+            protocol = buffer.remaining() >= 4 ? buffer.getInt() : 0;
         }
     }
 
@@ -139,6 +142,32 @@ public class Packets{
         }
     }
 
+    /** Several invoke packets sent in one. See {@link InvokeBatch}. */
+    public static class InvokeBatchPacket implements Packet{
+        /** Length of the invoke data before compression. */
+        public int length;
+        public boolean compressed;
+        public byte[] data;
+        public int dataLength;
+
+        @Override
+        public void read(ByteBuffer buffer){
+            length = buffer.getShort();
+            compressed = buffer.get() == 1;
+            dataLength = buffer.getShort();
+            data = new byte[dataLength];
+            buffer.get(data);
+        }
+
+        @Override
+        public void write(ByteBuffer buffer){
+            buffer.putShort((short)length);
+            buffer.put(compressed ? (byte)1 : 0);
+            buffer.putShort((short)dataLength);
+            buffer.put(data, 0, dataLength);
+        }
+    }
+
     /** Marks the beginning of a stream. */
     public static class StreamBegin implements Packet{
         private static int lastid;
@@ -0,0 +1,158 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.collection.*;
+
+/**
+ * Tracks which entity states a client has acknowledged, so that entities that have not changed can be left out of snapshots.
+ * Every entity snapshot packet gets an ID; clients acknowledge the last recieved ID along with a bitmask of the 64 IDs before it.
+ * States that are never acknowledged (e.g. due to packet loss) never become part of the baseline, and are therefore sent again.
+ */
+public class SnapshotBaseline{
+    /** Amount of sent packets that are remembered for acknowledgement. */
+    private static final int history = 128;
+    /**
+     * Amount of times a state must be acknowledged before an entity stops being sent.
+     * The {@link Interpolator} of a client only holds an entity at its position once it recieves the same state twice,
+     * and keeps moving it past its last position otherwise.
+     */
+    private static final int requiredAcks = 2;
+
+    /** Maps group IDs to maps of entity ID -> acknowledged state. */
+    private final IntMap<IntMap<State>> states = new IntMap<>();
+    /** Group, entity ID and length triples of each sent packet, indexed by packet ID. */
+    private final IntArray[] sent = new IntArray[history];
+    /** Hashes of the states of each sent packet, in the same order as the triples. */
+    private final LongArray[] sentHashes = new LongArray[history];
+    /** Packet ID stored in each slot of the sent array, or -1 if the slot is empty or already acknowledged. */
+    private final int[] sentIDs = new int[history];
+    /** Triples and hashes written since the last packet was sent. */
+    private final IntArray pending = new IntArray();
+    private final LongArray pendingHashes = new LongArray();
+    /** Amount of acknowledged entity states. */
+    private int tracked;
+    private int lastPacket = -1;
+
+    public SnapshotBaseline(){
+        for(int i = 0; i < history; i++){
+            sent[i] = new IntArray();
+            sentHashes[i] = new LongArray();
+            sentIDs[i] = -1;
+        }
+    }
+
+    /** @return whether the client has acknowledged this exact entity state enough times. */
+    public boolean isAcknowledged(int group, int id, long hash, int length){
+        IntMap<State> groupStates = states.get(group);
+        State state = groupStates == null ? null : groupStates.get(id);
+        return state != null && state.hash == hash && state.length == length && state.acks >= requiredAcks;
+    }
+
+    /** Records an entity state as part of the next packet. */
+    public void record(int group, int id, long hash, int length){
+        pending.add(group);
+        pending.add(id);
+        pending.add(length);
+        pendingHashes.add(hash);
+    }
+
+    /** Assigns an ID to all states recorded since the last call. The returned ID must be sent with the packet. */
+    public int flush(){
+        int id = ++lastPacket;
+        int slot = id % history;
+        sentIDs[slot] = id;
+        sent[slot].clear();
+        sent[slot].addAll(pending);
+        sentHashes[slot].clear();
+        sentHashes[slot].addAll(pendingHashes);
+        pending.clear();
+        pendingHashes.clear();
+        return id;
+    }
+
+    /**
+     * Handles a packet acknowledgement from the client.
+     * @param last the latest packet ID the client recieved.
+     * @param bits bitmask of recieved packets before the latest one; bit i represents packet ID last - 1 - i.
+     */
+    public void acknowledge(int last, long bits){
+        //handle older packets first, so newer states take precedence
+        for(int i = 63; i >= 0; i--){
+            if((bits & (1L << i)) != 0){
+                acknowledge(last - 1 - i);
+            }
+        }
+        acknowledge(last);
+    }
+
+    /** @return ID of the last sent packet, or -1 if nothing was sent yet. */
+    public int lastPacket(){
+        return lastPacket;
+    }
+
+    /** Clears all acknowledged data if it has grown far beyond the amount of entities currently synced. */
+    public void prune(int entities){
+        if(tracked > entities * 2 + 64){
+            clearStates();
+        }
+    }
+
+    /** Resets all acknowledgement data. Call when the client loses all its entities, e.g. when a new world is sent. */
+    public void reset(){
+        clearStates();
+        pending.clear();
+        pendingHashes.clear();
+        for(int i = 0; i < history; i++){
+            sentIDs[i] = -1;
+            sent[i].clear();
+            sentHashes[i].clear();
+        }
+    }
+
+    private void acknowledge(int id){
+        if(id < 0 || id > lastPacket) return;
+
+        int slot = id % history;
+        if(sentIDs[slot] != id) return;
+        sentIDs[slot] = -1;
+
+        IntArray triples = sent[slot];
+        LongArray hashes = sentHashes[slot];
+        for(int i = 0; i < triples.size; i += 3){
+            int group = triples.get(i), entity = triples.get(i + 1), length = triples.get(i + 2);
+            long hash = hashes.get(i / 3);
+
+            IntMap<State> groupStates = states.get(group);
+            if(groupStates == null){
+                states.put(group, groupStates = new IntMap<>());
+            }
+
+            State state = groupStates.get(entity);
+            if(state == null){
+                groupStates.put(entity, state = new State());
+                tracked++;
+            }
+
+            if(state.acks > 0 && state.hash == hash && state.length == length){
+                state.acks++;
+            }else{
+                state.hash = hash;
+                state.length = length;
+                state.acks = 1;
+            }
+        }
+    }
+
+    private void clearStates(){
+        for(IntMap<State> map : states.values()){
+            map.clear();
+        }
+        tracked = 0;
+    }
+
+    /** Last acknowledged state of an entity. */
+    private static class State{
+        long hash;
+        int length;
+        int acks;
+    }
+}
@@ -0,0 +1,97 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.util.io.ReusableByteOutStream;
+import io.anuke.mindustry.entities.EntityGroup;
+import io.anuke.mindustry.entities.traits.Entity;
+import io.anuke.mindustry.entities.traits.SyncTrait;
+
+import java.io.*;
+
+/**
+ * Holds the sync data of every syncable entity, encoded once per sync frame.
+ * Player snapshots are assembled by copying spans out of this buffer, instead of re-encoding each entity per player.
+ */
+public class SnapshotCache{
+    private final ReusableByteOutStream stream = new ReusableByteOutStream();
+    private final DataOutputStream data = new DataOutputStream(stream);
+    /** Maps group IDs to maps of entity ID -> span index. */
+    private final IntMap<IntIntMap> indices = new IntMap<>();
+    /** Offset and length of every encoded entity. */
+    private final IntArray spans = new IntArray();
+    /** 64-bit hash of every encoded entity. */
+    private final LongArray hashes = new LongArray();
+
+    /** Clears all previously encoded data. Call once at the start of every sync frame. */
+    public void begin(){
+        stream.reset();
+        spans.clear();
+        hashes.clear();
+        for(IntIntMap map : indices.values()){
+            map.clear();
+        }
+    }
+
+    /** Encodes every syncing entity of this group. Each span consists of the ID, type ID and sync data of the entity.*/
+    public void encode(EntityGroup<?> group) throws IOException{
+        IntIntMap map = indices.get(group.getID());
+        if(map == null){
+            indices.put(group.getID(), map = new IntIntMap());
+        }
+
+        for(Entity entity : group.all()){
+            if(!(entity instanceof SyncTrait) || !((SyncTrait)entity).isSyncing()) continue;
+            SyncTrait sync = (SyncTrait)entity;
+
+            int start = stream.size();
+            data.writeInt(sync.getID());
+            data.writeByte(sync.getTypeID().id);
+            sync.write(data);
+
+            map.put(sync.getID(), spans.size / 2);
+            spans.add(start);
+            spans.add(stream.size() - start);
+            hashes.add(hash(start, stream.size() - start));
+        }
+    }
+
+    /** @return the span index of an entity, or -1 if it was not encoded this frame. */
+    public int indexOf(EntityGroup<?> group, int id){
+        IntIntMap map = indices.get(group.getID());
+        return map == null ? -1 : map.get(id, -1);
+    }
+
+    /**
+     * @return a 64-bit hash of the encoded state of an entity. Along with its length, this is used to check whether
+     * it has changed since the last snapshot, so collisions have to be practically impossible.
+     */
+    public long hash(int index){
+        return hashes.get(index);
+    }
+
+    /** @return the length of the encoded state of an entity. */
+    public int length(int index){
+        return spans.get(index * 2 + 1);
+    }
+
+    /** Copies the encoded span of an entity into the output. */
+    public void write(int index, OutputStream output) throws IOException{
+        output.write(stream.getBytes(), spans.get(index * 2), spans.get(index * 2 + 1));
+    }
+
+    /** @return amount of entities encoded in this frame. */
+    public int count(){
+        return spans.size / 2;
+    }
+
+    /** FNV-1a hash of a span of the stream. */
+    private long hash(int offset, int length){
+        byte[] bytes = stream.getBytes();
+        long result = 0xcbf29ce484222325L;
+        for(int i = offset; i < offset + length; i++){
+            result ^= bytes[i] & 0xff;
+            result *= 0x100000001b3L;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,98 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.Events;
+import io.anuke.arc.collection.IntArray;
+import io.anuke.arc.collection.IntSet;
+import io.anuke.arc.math.Mathf;
+import io.anuke.mindustry.core.NetServer;
+import io.anuke.mindustry.entities.type.TileEntity;
+import io.anuke.mindustry.game.EventType.WorldLoadEvent;
+import io.anuke.mindustry.gen.Call;
+import io.anuke.mindustry.world.Tile;
+
+import java.nio.ByteBuffer;
+
+import static io.anuke.mindustry.Vars.world;
+
+/**
+ * Collects tiles that were damaged on the server, and sends their health to clients in bulk.
+ * A tile that is hit many times between two flushes is only sent once, with its latest health.
+ * Each tile takes up 6 bytes: its packed position and its health as a fraction of its max health, quantized to an unsigned short.
+ */
+public class TileHealthSync{
+    /** Amount of bytes used for each tile. */
+    private static final int entrySize = 6;
+    /** Maximum amount of tiles in a single packet, so that it stays as small as an entity snapshot. */
+    private static final int maxEntries = NetServer.maxSnapshotSize / entrySize;
+
+    private final IntSet dirty = new IntSet();
+    /** Positions of dirty tiles, in the order they were damaged. */
+    private final IntArray positions = new IntArray();
+    private final ByteBuffer buffer = ByteBuffer.allocate(maxEntries * entrySize);
+
+    public TileHealthSync(){
+        Events.on(WorldLoadEvent.class, event -> reset());
+    }
+
+    /** Marks the health of this tile as changed. */
+    public void mark(Tile tile){
+        if(dirty.add(tile.pos())){
+            positions.add(tile.pos());
+        }
+    }
+
+    /** Sends the health of every tile damaged since the last flush, and clears them. */
+    public void flush(){
+        buffer.position(0);
+
+        for(int i = 0; i < positions.size; i++){
+            Tile tile = world.tile(positions.get(i));
+            //the tile may have been destroyed in the meantime, in which case the client is notified separately
+            if(tile == null || tile.entity == null) continue;
+
+            buffer.putInt(tile.pos());
+            buffer.putShort((short)(Mathf.clamp(tile.entity.health / tile.entity.maxHealth()) * 65535));
+
+            if(!buffer.hasRemaining()){
+                send();
+            }
+        }
+
+        if(buffer.position() > 0){
+            send();
+        }
+
+        reset();
+    }
+
+    /** @return amount of tiles waiting to be sent. */
+    public int size(){
+        return positions.size;
+    }
+
+    public void reset(){
+        dirty.clear();
+        positions.clear();
+    }
+
+    private void send(){
+        byte[] data = new byte[buffer.position()];
+        buffer.position(0);
+        buffer.get(data);
+        buffer.position(0);
+        Call.onTileHealth(data);
+    }
+
+    /** Applies the health data of a bulk health packet recieved from the server. */
+    public static void read(byte[] data){
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while(buffer.remaining() >= entrySize){
+            Tile tile = world.tile(buffer.getInt());
+            float fraction = (buffer.getShort() & 0xffff) / 65535f;
+
+            if(tile != null && tile.entity != null){
+                TileEntity.onTileDamage(tile, fraction * tile.entity.maxHealth());
+            }
+        }
+    }
+}
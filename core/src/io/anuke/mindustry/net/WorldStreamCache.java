@@ -0,0 +1,185 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.Events;
+import io.anuke.arc.function.Consumer;
+import io.anuke.arc.util.Log;
+import io.anuke.arc.util.async.*;
+import io.anuke.arc.util.io.FastDeflaterOutputStream;
+import io.anuke.arc.util.io.ReusableByteOutStream;
+import io.anuke.mindustry.entities.type.Player;
+import io.anuke.mindustry.game.EventType.WorldLoadEvent;
+import io.anuke.mindustry.io.SaveIO;
+import io.anuke.mindustry.world.Tile;
+
+import java.io.*;
+
+import static io.anuke.mindustry.Vars.world;
+
+/**
+ * Caches the world data sent to joining players.
+ * The map is split into chunks of tile rows, which are only re-encoded when a tile or the state of a tile entity in them
+ * changes, as reported by {@link io.anuke.mindustry.core.World#addChangeListener(Consumer)} and
+ * {@link io.anuke.mindustry.core.World#addDataListener(Consumer)}. Sleeping tile entities don't change, so in a running game,
+ * only chunks with awake entities are encoded again for a join.
+ * Compression happens on a background thread, and the compressed map is reused until the data of a chunk changes.
+ * Only the small per-player header is encoded for each join.
+ */
+public class WorldStreamCache{
+    /** Amount of tile rows in each chunk. */
+    private static final int chunkRows = 16;
+
+    private final AsyncExecutor executor = new AsyncExecutor(1);
+    private final ReusableByteOutStream chunkStream = new ReusableByteOutStream();
+    private final DataOutputStream chunkData = new DataOutputStream(chunkStream);
+
+    private byte[] floors;
+    private byte[][] blocks = {};
+    private boolean[] dirty = {};
+
+    /** Incremented every time a chunk is re-encoded. */
+    private int version;
+    private int compressedVersion = -1;
+    private AsyncResult<byte[]> compressed;
+
+    public WorldStreamCache(){
+        Events.on(WorldLoadEvent.class, event -> reset());
+
+        //tile change events are posted to the next frame, which is too late for a join in the same frame
+        world.addChangeListener(this::markDirty);
+        world.addDataListener(this::markDirty);
+    }
+
+    /**
+     * Encodes the world for a player. Only changed chunks are encoded on the calling thread; compression happens asynchronously.
+     * @param done called on the compression thread with the resulting stream data. This must not touch game state.
+     */
+    public void write(Player player, Consumer<byte[]> done){
+        try{
+            refresh();
+
+            if(compressedVersion != version || compressed == null){
+                byte[] map = assemble();
+                compressedVersion = version;
+                compressed = executor.submit(() -> compress(map));
+            }
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            NetworkIO.writeWorldHeader(player, header);
+            byte[] headerBytes = header.toByteArray();
+            AsyncResult<byte[]> map = compressed;
+
+            //the executor runs tasks in order, so the map is always done compressing at this point
+            executor.submit(() -> {
+                try{
+                    byte[] head = compress(headerBytes);
+                    byte[] mapBytes = map.get();
+
+                    ByteArrayOutputStream out = new ByteArrayOutputStream(head.length + mapBytes.length + 4);
+                    DataOutputStream stream = new DataOutputStream(out);
+                    stream.writeInt(head.length);
+                    stream.write(head);
+                    stream.write(mapBytes);
+
+                    done.accept(out.toByteArray());
+                }catch(Exception e){
+                    Log.err(e);
+                }
+                return null;
+            });
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Marks all data as invalid. */
+    public void reset(){
+        int chunks = chunks();
+        floors = null;
+        blocks = new byte[chunks][];
+        dirty = new boolean[chunks];
+        compressed = null;
+        version++;
+    }
+
+    private void markDirty(Tile tile){
+        int chunk = tile.y / chunkRows;
+        if(chunk < dirty.length){
+            dirty[chunk] = true;
+        }
+    }
+
+    /** Re-encodes all chunks that have changed. */
+    private void refresh() throws IOException{
+        if(blocks.length != chunks()){
+            reset();
+        }
+
+        if(floors == null){
+            chunkStream.reset();
+            SaveIO.getSaveWriter().writeFloors(chunkData, 0, world.width() * world.height());
+            floors = chunkStream.toByteArray();
+            version++;
+        }
+
+        for(int i = 0; i < blocks.length; i++){
+            if(blocks[i] == null || dirty[i]){
+                encodeChunk(i);
+            }
+        }
+    }
+
+    private void encodeChunk(int chunk) throws IOException{
+        int start = chunk * chunkRows * world.width();
+        int end = Math.min((chunk + 1) * chunkRows, world.height()) * world.width();
+
+        chunkStream.reset();
+        SaveIO.getSaveWriter().writeBlocks(chunkData, start, end);
+        dirty[chunk] = false;
+
+        //the compressed map can be reused if nothing in the chunk has changed
+        if(equalsChunk(blocks[chunk])) return;
+        blocks[chunk] = chunkStream.toByteArray();
+        version++;
+    }
+
+    /** @return whether the chunk stream contains exactly these bytes. */
+    private boolean equalsChunk(byte[] bytes){
+        if(bytes == null || bytes.length != chunkStream.size()) return false;
+
+        byte[] data = chunkStream.getBytes();
+        for(int i = 0; i < bytes.length; i++){
+            if(bytes[i] != data[i]) return false;
+        }
+        return true;
+    }
+
+    /** @return the uncompressed map data, in the same format as {@link io.anuke.mindustry.io.SaveVersion#writeMap(DataOutput)}. */
+    private byte[] assemble() throws IOException{
+        int size = 4 + floors.length;
+        for(byte[] chunk : blocks){
+            size += chunk.length;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        DataOutputStream stream = new DataOutputStream(out);
+        stream.writeShort(world.width());
+        stream.writeShort(world.height());
+        stream.write(floors);
+        for(byte[] chunk : blocks){
+            stream.write(chunk);
+        }
+        return out.toByteArray();
+    }
+
+    private int chunks(){
+        return (world.height() + chunkRows - 1) / chunkRows;
+    }
+
+    private static byte[] compress(byte[] bytes) throws IOException{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(FastDeflaterOutputStream def = new FastDeflaterOutputStream(out)){
+            def.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -537,6 +537,10 @@ public class Block extends BlockStorage{
     public void update(Tile tile){
     }
 
+    /** Updates state that only belongs to this tile's entity. Called before {@link #update(Tile)}, possibly from another thread. */
+    public void updateParallel(Tile tile){
+    }
+
     public boolean isAccessible(){
         return (hasItems && itemCapacity > 0);
     }
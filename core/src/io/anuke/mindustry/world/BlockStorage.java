@@ -88,6 +88,7 @@ public abstract class BlockStorage extends UnlockableContent{
     }
 
     public void handleItem(Item item, Tile tile, Tile source){
+        tile.entity.noSleep();
         tile.entity.items.add(item, 1);
     }
 
@@ -100,6 +101,7 @@ public abstract class BlockStorage extends UnlockableContent{
     }
 
     public void handleLiquid(Tile tile, Tile source, Liquid liquid, float amount){
+        tile.entity.noSleep();
         tile.entity.liquids.add(liquid, amount);
     }
 
@@ -132,6 +132,7 @@ public class Tile implements Position, TargetTrait{
 
     public void setTeam(Team team){
         this.team = (byte)team.ordinal();
+        if(world != null) world.notifyDataChanged(this);
     }
 
     public byte getTeamID(){
@@ -176,6 +177,7 @@ public class Tile implements Position, TargetTrait{
 
     public void rotation(int rotation){
         this.rotation = (byte)rotation;
+        if(world != null) world.notifyDataChanged(this);
     }
 
     public short overlayID(){
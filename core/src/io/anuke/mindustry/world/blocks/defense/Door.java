@@ -39,6 +39,7 @@ public class Door extends Wall{
         if(entity != null){
             entity.open = open;
             Door door = (Door)tile.block();
+            world.notifyDataChanged(tile);
 
             pathfinder.updateSolid(tile);
             if(!entity.open){
@@ -1,7 +1,8 @@
 package io.anuke.mindustry.world.blocks.defense.turrets;
 
+import io.anuke.arc.function.BiConsumer;
+import io.anuke.arc.function.Consumer;
 import io.anuke.arc.math.Mathf;
-import io.anuke.arc.util.Time;
 import io.anuke.mindustry.content.Fx;
 import io.anuke.mindustry.entities.Effects;
 import io.anuke.mindustry.entities.Effects.Effect;
@@ -9,6 +10,7 @@ import io.anuke.mindustry.entities.bullet.BulletType;
 import io.anuke.mindustry.entities.type.TileEntity;
 import io.anuke.mindustry.world.Tile;
 
+import static io.anuke.mindustry.Vars.scheduler;
 import static io.anuke.mindustry.Vars.tilesize;
 
 public class ChargeTurret extends PowerTurret{
@@ -19,6 +21,25 @@ public class ChargeTurret extends PowerTurret{
     protected Effect chargeEffect = Fx.none;
     protected Effect chargeBeginEffect = Fx.none;
 
+    /** Shows one charge effect while charging. */
+    protected final Consumer<Tile> chargeAction = tile -> {
+        if(!isTurret(tile)) return;
+        TurretEntity entity = tile.entity();
+        tr.trns(entity.rotation, size * tilesize / 2);
+        Effects.effect(chargeEffect, tile.drawx() + tr.x, tile.drawy() + tr.y, entity.rotation);
+    };
+    /** Fires the charged shot. */
+    protected final BiConsumer<Tile, BulletType> shootAction = (tile, ammo) -> {
+        if(!(tile.entity instanceof LaserTurretEntity)) return;
+        LaserTurretEntity entity = tile.entity();
+        tr.trns(entity.rotation, size * tilesize / 2);
+        entity.recoil = recoil;
+        entity.heat = 1f;
+        bullet(tile, ammo, entity.rotation + Mathf.range(inaccuracy));
+        effects(tile);
+        entity.shooting = false;
+    };
+
     public ChargeTurret(String name){
         super(name);
     }
@@ -33,24 +54,12 @@ public class ChargeTurret extends PowerTurret{
         Effects.effect(chargeBeginEffect, tile.drawx() + tr.x, tile.drawy() + tr.y, entity.rotation);
 
         for(int i = 0; i < chargeEffects; i++){
-            Time.run(Mathf.random(chargeMaxDelay), () -> {
-                if(!isTurret(tile)) return;
-                tr.trns(entity.rotation, size * tilesize / 2);
-                Effects.effect(chargeEffect, tile.drawx() + tr.x, tile.drawy() + tr.y, entity.rotation);
-            });
+            scheduler.run(Mathf.random(chargeMaxDelay), tile, chargeAction);
         }
 
         entity.shooting = true;
 
-        Time.run(chargeTime, () -> {
-            if(!isTurret(tile)) return;
-            tr.trns(entity.rotation, size * tilesize / 2);
-            entity.recoil = recoil;
-            entity.heat = 1f;
-            bullet(tile, ammo, entity.rotation + Mathf.range(inaccuracy));
-            effects(tile);
-            entity.shooting = false;
-        });
+        scheduler.run(chargeTime, tile, ammo, shootAction);
     }
 
     @Override
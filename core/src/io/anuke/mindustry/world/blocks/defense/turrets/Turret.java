@@ -5,13 +5,13 @@ import io.anuke.arc.audio.*;
 import io.anuke.arc.collection.Array;
 import io.anuke.arc.collection.EnumSet;
 import io.anuke.arc.function.BiConsumer;
+import io.anuke.arc.function.Consumer;
 import io.anuke.arc.graphics.Blending;
 import io.anuke.arc.graphics.Color;
 import io.anuke.arc.graphics.g2d.*;
 import io.anuke.arc.math.Angles;
 import io.anuke.arc.math.Mathf;
 import io.anuke.arc.math.geom.Vector2;
-import io.anuke.arc.util.Time;
 import io.anuke.mindustry.content.Fx;
 import io.anuke.mindustry.entities.*;
 import io.anuke.mindustry.entities.Effects.Effect;
@@ -25,13 +25,11 @@ import io.anuke.mindustry.world.Block;
 import io.anuke.mindustry.world.Tile;
 import io.anuke.mindustry.world.meta.*;
 
+import static io.anuke.mindustry.Vars.scheduler;
+import static io.anuke.mindustry.Vars.targeting;
 import static io.anuke.mindustry.Vars.tilesize;
 
 public abstract class Turret extends Block{
-    protected static final int targetInterval = 20;
-
-    protected final int timerTarget = timers++;
-
     protected Color heatColor = Pal.turretHeat;
     protected Effect shootEffect = Fx.none;
     protected Effect smokeEffect = Fx.none;
@@ -60,6 +58,8 @@ public abstract class Turret extends Block{
 
     protected TextureRegion baseRegion, heatRegion;
 
+    /** Runs {@link #ejectEffects(Tile)} through the scheduler without allocating. */
+    protected final Consumer<Tile> ejectAction = this::ejectEffects;
     protected BiConsumer<Tile, TurretEntity> drawer = (tile, entity) -> Draw.rect(region, tile.drawx() + tr2.x, tile.drawy() + tr2.y, entity.rotation - 90);
     protected BiConsumer<Tile, TurretEntity> heatDrawer = (tile, entity) -> {
         if(entity.heat <= 0.00001f) return;
@@ -141,17 +141,22 @@ public abstract class Turret extends Block{
     }
 
     @Override
-    public void update(Tile tile){
+    public void updateParallel(Tile tile){
         TurretEntity entity = tile.entity();
 
-        if(!validateTarget(tile)) entity.target = null;
-
         entity.recoil = Mathf.lerpDelta(entity.recoil, 0f, restitution);
         entity.heat = Mathf.lerpDelta(entity.heat, 0f, cooldown);
+    }
+
+    @Override
+    public void update(Tile tile){
+        TurretEntity entity = tile.entity();
+
+        if(!validateTarget(tile)) entity.target = null;
 
         if(hasAmmo(tile)){
 
-            if(entity.timer.get(timerTarget, targetInterval)){
+            if(targeting.isDue(tile.drawx(), tile.drawy())){
                 findTarget(tile);
             }
 
@@ -192,9 +197,9 @@ public abstract class Turret extends Block{
         TurretEntity entity = tile.entity();
 
         if(targetAir && !targetGround){
-            entity.target = Units.closestEnemy(tile.getTeam(), tile.drawx(), tile.drawy(), range, e -> !e.isDead() && e.isFlying());
+            entity.target = targeting.closestEnemy(tile.getTeam(), tile.drawx(), tile.drawy(), range, e -> !e.isDead() && e.isFlying());
         }else{
-            entity.target = Units.closestTarget(tile.getTeam(), tile.drawx(), tile.drawy(), range, e -> !e.isDead() && (!e.isFlying() || targetAir) && (e.isFlying() || targetGround));
+            entity.target = targeting.closestTarget(tile.getTeam(), tile.drawx(), tile.drawy(), range, e -> !e.isDead() && (!e.isFlying() || targetAir) && (e.isFlying() || targetGround), t -> true);
         }
     }
 
@@ -217,7 +222,7 @@ public abstract class Turret extends Block{
         entry.amount -= ammoPerShot;
         if(entry.amount == 0) entity.ammo.pop();
         entity.totalAmmo -= ammoPerShot;
-        Time.run(reload / 2f, () -> ejectEffects(tile));
+        scheduler.run(reload / 2f, tile, ejectAction);
         return entry.type();
     }
 
@@ -30,6 +30,8 @@ public class Conveyor extends Block{
     private TextureRegion[][] regions = new TextureRegion[7][4];
 
     protected float speed = 0f;
+    /** Whether straight runs are updated together as segments. Otherwise, every conveyor updates itself. */
+    public boolean segmented = true;
 
     protected Conveyor(String name){
         super(name);
@@ -106,6 +108,12 @@ public class Conveyor extends Block{
         }else if(blends(tile, 3)){
             entity.blendbits = 1;
         }
+
+        //the straight run this conveyor is in may have changed, so it is found again during the next update
+        if(entity.segment != null){
+            entity.segment.dissolve();
+        }
+        entity.noSleep();
     }
 
     @Override
@@ -203,9 +211,52 @@ public class Conveyor extends Block{
     @Override
     public void update(Tile tile){
         ConveyorEntity entity = tile.entity();
-        entity.minitem = 1f;
+
+        if(!segmented){
+            Tile next = tile.getNearby(tile.rotation());
+            if(next != null) next = next.link();
+            updateItems(tile, entity, next);
+
+            if(entity.items.total() == 0){
+                entity.sleep();
+            }else{
+                entity.noSleep();
+            }
+            return;
+        }
+
+        if(entity.segment == null){
+            Segment.build(this, tile);
+        }
+
+        //conveyors in a straight run are updated by the conveyor at its end
+        if(entity.segment.head() != entity){
+            entity.sleep();
+            return;
+        }
+
+        entity.segment.update();
+    }
+
+    /** @return the next conveyor of a straight run, or null if the run ends at this tile. */
+    private Tile nextInRun(Tile tile){
         Tile next = tile.getNearby(tile.rotation());
-        if(next != null) next = next.link();
+        return next != null && inRun(tile, next) ? next : null;
+    }
+
+    /** @return the previous conveyor of a straight run, or null if the run starts at this tile. */
+    private Tile previousInRun(Tile tile){
+        Tile previous = tile.getNearby((tile.rotation() + 2) % 4);
+        return previous != null && inRun(tile, previous) ? previous : null;
+    }
+
+    private boolean inRun(Tile tile, Tile other){
+        return other.block() == this && other.entity instanceof ConveyorEntity && other.rotation() == tile.rotation() && other.getTeam() == tile.getTeam();
+    }
+
+    /** Moves the items of a single conveyor, passing them on to the next tile if possible. */
+    private void updateItems(Tile tile, ConveyorEntity entity, Tile next){
+        entity.minitem = 1f;
 
         float nextMax = next != null && next.block() instanceof Conveyor ? 1f - Math.max(itemSpace - next.<ConveyorEntity>entity().minitem, 0) : 1f;
         int minremove = Integer.MAX_VALUE;
@@ -261,12 +312,6 @@ public class Conveyor extends Block{
             entity.clogHeat = Mathf.lerpDelta(entity.clogHeat, 0f, 1f);
         }
 
-        if(entity.items.total() == 0){
-            entity.sleep();
-        }else{
-            entity.noSleep();
-        }
-
         if(minremove != Integer.MAX_VALUE) entity.convey.truncate(minremove);
     }
 
@@ -373,6 +418,29 @@ public class Conveyor extends Block{
 
         float clogHeat = 0f;
 
+        /** Straight run this conveyor is in, or null if it has to be found again. */
+        Segment segment;
+
+        @Override
+        public void noSleep(){
+            //conveyors in a straight run are updated by the conveyor at its end, so that one is woken up instead
+            if(segment != null && segment.head() != this){
+                dataChanged();
+                segment.head().noSleep();
+            }else{
+                super.noSleep();
+            }
+        }
+
+        @Override
+        public void removed(){
+            super.removed();
+
+            if(segment != null){
+                segment.dissolve();
+            }
+        }
+
         @Override
         public void write(DataOutput stream) throws IOException{
             super.write(stream);
@@ -396,6 +464,108 @@ public class Conveyor extends Block{
         }
     }
 
+    /**
+     * A straight run of conveyors of the same type, facing the same way.
+     * Its conveyors are updated together by the last one, so that items move in one pass and only one entity of the run
+     * has to be awake. They are updated from the start to the end, which is the order conveyors updating themselves run in
+     * when a line is built from its source toward its destination, so items move exactly as they would then.
+     * Updating conveyors one by one in another order, or handing an item to a conveyor that was asleep, delays that item
+     * by one tick at that conveyor, which never happens within a segment.
+     */
+    static class Segment{
+        private static final Array<ConveyorEntity> tmpEntities = new Array<>();
+
+        /** Entities of the run, from its start to its end. */
+        final ConveyorEntity[] entities;
+        final Conveyor block;
+
+        private Segment(Conveyor block, ConveyorEntity[] entities){
+            this.block = block;
+            this.entities = entities;
+        }
+
+        /** Finds the straight run this conveyor is in, and makes it a segment. */
+        static void build(Conveyor block, Tile tile){
+            Tile start = tile, previous;
+            while((previous = block.previousInRun(start)) != null){
+                start = previous;
+            }
+
+            tmpEntities.clear();
+            for(Tile other = start; other != null; other = block.nextInRun(other)){
+                tmpEntities.add(other.entity());
+            }
+
+            Segment segment = new Segment(block, tmpEntities.toArray(ConveyorEntity.class));
+            tmpEntities.clear();
+
+            for(ConveyorEntity entity : segment.entities){
+                if(entity.segment != null){
+                    entity.segment.dissolve();
+                }
+            }
+            for(ConveyorEntity entity : segment.entities){
+                entity.segment = segment;
+            }
+
+            //conveyors of the run may have items that are waiting to move
+            segment.head().noSleep();
+        }
+
+        ConveyorEntity head(){
+            return entities[entities.length - 1];
+        }
+
+        void update(){
+            ConveyorEntity head = head();
+            boolean moving = false;
+
+            for(int i = 0; i < entities.length; i++){
+                ConveyorEntity entity = entities[i];
+
+                //a conveyor was removed without its neighbors being notified
+                if(entity.segment != this || entity.isDead()){
+                    dissolve();
+                    return;
+                }
+
+                //awake conveyors are updated as regular entities, which takes care of this
+                if(entity.isSleeping() && !entity.updateState()){
+                    //the conveyor was destroyed, which dissolved this segment
+                    return;
+                }
+
+                Tile next;
+                if(entity == head){
+                    next = entity.tile.getNearby(entity.tile.rotation());
+                    if(next != null) next = next.link();
+                }else{
+                    next = entities[i + 1].tile;
+                }
+
+                block.updateItems(entity.tile, entity, next);
+                moving |= entity.items.total() > 0;
+            }
+
+            //items passed on to the next segment wake it up through handleItem
+            if(moving){
+                head.noSleep();
+            }else{
+                head.sleep();
+            }
+        }
+
+        /** Splits this segment up, so that every conveyor finds its run again during its next update. */
+        void dissolve(){
+            for(ConveyorEntity entity : entities){
+                if(entity.segment == this){
+                    entity.segment = null;
+                    entity.noSleep();
+                }
+            }
+        }
+    }
+
     //Container class. Do not instantiate.
     static class ItemPos{
         private static short[] writeShort = new short[4];
@@ -53,15 +53,19 @@ public class ItemBridge extends Block{
         ItemBridgeEntity oe = other.entity();
         entity.link = other.pos();
         oe.incoming.add(tile.pos());
+        world.notifyDataChanged(tile);
+        world.notifyDataChanged(other);
     }
 
     @Remote(targets = Loc.both, called = Loc.server, forward = true)
     public static void unlinkItemBridge(Player player, Tile tile, Tile other){
         ItemBridgeEntity entity = tile.entity();
         entity.link = -1;
+        world.notifyDataChanged(tile);
         if(other != null){
             ItemBridgeEntity oe = other.entity();
             oe.incoming.remove(tile.pos());
+            world.notifyDataChanged(other);
         }
     }
 
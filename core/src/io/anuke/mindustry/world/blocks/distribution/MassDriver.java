@@ -50,6 +50,7 @@ public class MassDriver extends Block{
     public static void linkMassDriver(Player player, Tile tile, int position){
         MassDriverEntity entity = tile.entity();
         entity.link = position;
+        world.notifyDataChanged(tile);
     }
 
     @Override
@@ -15,6 +15,7 @@ import io.anuke.mindustry.world.meta.BlockGroup;
 import java.io.*;
 
 import static io.anuke.mindustry.Vars.content;
+import static io.anuke.mindustry.Vars.world;
 
 public class Sorter extends Block{
     private static Item lastItem;
@@ -44,6 +45,7 @@ public class Sorter extends Block{
         if(entity != null){
             entity.sortItem = item;
         }
+        world.notifyDataChanged(tile);
     }
 
     @Override
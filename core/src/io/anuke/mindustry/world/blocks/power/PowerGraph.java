@@ -5,19 +5,49 @@ import io.anuke.arc.collection.*;
 import io.anuke.arc.math.Mathf;
 import io.anuke.arc.math.WindowedMean;
 import io.anuke.arc.util.Time;
+import io.anuke.mindustry.entities.type.TileEntity;
+import io.anuke.mindustry.world.Block;
 import io.anuke.mindustry.world.Tile;
 import io.anuke.mindustry.world.consumers.*;
+import io.anuke.mindustry.world.modules.PowerModule;
 
+import java.util.Arrays;
+
+import static io.anuke.mindustry.Vars.world;
+
+/**
+ * A set of connected power tiles.
+ * Tiles are stored as a structure of parallel arrays indexed by {@link PowerModule#graphIndex}, so that adding and removing a tile
+ * is constant time, merging two graphs is a bulk copy, and an update only has to walk over the arrays twice:
+ * once to sum up production, demand and battery charge, and once to hand out the result.
+ * <p>
+ * Removing tiles does not split the graph right away. Instead, the graph is checked for disconnected parts with a union-find
+ * at the start of its next update, so that any amount of removals in the same tick only cost a single pass.
+ */
 public class PowerGraph{
     private final static Queue<Tile> queue = new Queue<>();
     private final static Array<Tile> outArray1 = new Array<>();
     private final static Array<Tile> outArray2 = new Array<>();
     private final static IntSet closedSet = new IntSet();
-
-    private final ObjectSet<Tile> producers = new ObjectSet<>();
-    private final ObjectSet<Tile> consumers = new ObjectSet<>();
-    private final ObjectSet<Tile> batteries = new ObjectSet<>();
-    private final ObjectSet<Tile> all = new ObjectSet<>();
+    private final static IntMap<PowerGraph> branches = new IntMap<>();
+    private final static IntArray splitRoots = new IntArray();
+    private static int[] parents = new int[64], counts = new int[64];
+
+    private final static byte roleProducer = 1, roleConsumer = 2, roleBattery = 4;
+
+    private Tile[] tiles = new Tile[4];
+    private TileEntity[] entities = new TileEntity[4];
+    /** Power consumer of each tile, or null if it does not have one. */
+    private ConsumePower[] powers = new ConsumePower[4];
+    private float[] capacities = new float[4];
+    private byte[] roles = new byte[4];
+    /** Power requested by each consumer in the current update, already multiplied by delta. */
+    private float[] requested = new float[4];
+    /** Whether all other consumers of each tile were valid in the current update. */
+    private boolean[] valid = new boolean[4];
+    private int size, producers, consumers, batteries;
+    /** Whether a connection was removed since the last update, so this graph may have to be split. */
+    private boolean disconnected;
 
     private final WindowedMean powerBalance = new WindowedMean(60);
     private float lastPowerProduced, lastPowerNeeded;
@@ -34,6 +64,11 @@ public class PowerGraph{
         return graphID;
     }
 
+    /** @return amount of tiles in this graph. */
+    public int size(){
+        return size;
+    }
+
     public float getPowerBalance(){
         return powerBalance.getMean();
     }
@@ -57,22 +92,19 @@ public class PowerGraph{
 
     public float getPowerProduced(){
         float powerProduced = 0f;
-        for(Tile producer : producers){
-            if(producer.entity == null) continue;
-            powerProduced += producer.block().getPowerProduction(producer) * producer.entity.delta();
+        for(int i = 0; i < size; i++){
+            if((roles[i] & roleProducer) != 0){
+                powerProduced += tiles[i].block().getPowerProduction(tiles[i]) * entities[i].delta();
+            }
         }
         return powerProduced;
     }
 
     public float getPowerNeeded(){
         float powerNeeded = 0f;
-        for(Tile consumer : consumers){
-            Consumers consumes = consumer.block().consumes;
-            if(consumes.hasPower()){
-                ConsumePower consumePower = consumes.getPower();
-                if(otherConsumersAreValid(consumer, consumePower)){
-                    powerNeeded += consumePower.requestedPower(consumer.entity) * consumer.entity.delta();
-                }
+        for(int i = 0; i < size; i++){
+            if((roles[i] & roleConsumer) != 0 && powers[i] != null && request(i)){
+                powerNeeded += requested[i];
             }
         }
         return powerNeeded;
@@ -80,10 +112,9 @@ public class PowerGraph{
 
     public float getBatteryStored(){
         float totalAccumulator = 0f;
-        for(Tile battery : batteries){
-            Consumers consumes = battery.block().consumes;
-            if(consumes.hasPower()){
-                totalAccumulator += battery.entity.power.satisfaction * consumes.getPower().capacity;
+        for(int i = 0; i < size; i++){
+            if((roles[i] & roleBattery) != 0){
+                totalAccumulator += entities[i].power.satisfaction * capacities[i];
             }
         }
         return totalAccumulator;
@@ -91,10 +122,9 @@ public class PowerGraph{
 
     public float getBatteryCapacity(){
         float totalCapacity = 0f;
-        for(Tile battery : batteries){
-            if(battery.block().consumes.hasPower()){
-                ConsumePower power = battery.block().consumes.getPower();
-                totalCapacity += (1f - battery.entity.power.satisfaction) * power.capacity;
+        for(int i = 0; i < size; i++){
+            if((roles[i] & roleBattery) != 0){
+                totalCapacity += (1f - entities[i].power.satisfaction) * capacities[i];
             }
         }
         return totalCapacity;
@@ -104,60 +134,24 @@ public class PowerGraph{
         float stored = getBatteryStored();
         if(Mathf.isEqual(stored, 0f)) return 0f;
 
-        float used = Math.min(stored, needed);
-        float consumedPowerPercentage = Math.min(1.0f, needed / stored);
-        for(Tile battery : batteries){
-            Consumers consumes = battery.block().consumes;
-            if(consumes.hasPower()){
-                battery.entity.power.satisfaction *= (1f-consumedPowerPercentage);
-            }
-        }
-        return used;
+        drainBatteries(Math.min(1.0f, needed / stored));
+        return Math.min(stored, needed);
     }
 
     public float chargeBatteries(float excess){
         float capacity = getBatteryCapacity();
-        //how much of the missing in each battery % is charged
-        float chargedPercent = Math.min(excess/capacity, 1f);
         if(Mathf.isEqual(capacity, 0f)) return 0f;
 
-        for(Tile battery : batteries){
-            Consumers consumes = battery.block().consumes;
-            if(consumes.hasPower()){
-                ConsumePower consumePower = consumes.getPower();
-                if(consumePower.capacity > 0f){
-                    battery.entity.power.satisfaction += (1f-battery.entity.power.satisfaction) * chargedPercent;
-                }
-            }
-        }
+        chargeBatteries(excess, capacity);
         return Math.min(excess, capacity);
     }
 
     public void distributePower(float needed, float produced){
-        //distribute even if not needed. this is because some might be requiring power but not using it; it updates consumers
-        float coverage = Mathf.isZero(needed) && Mathf.isZero(produced) ? 0f : Mathf.isZero(needed) ? 1f : Math.min(1, produced / needed);
-        for(Tile consumer : consumers){
-            Consumers consumes = consumer.block().consumes;
-            if(consumes.hasPower()){
-                ConsumePower consumePower = consumes.getPower();
-                if(consumePower.buffered){
-                    if(!Mathf.isZero(consumePower.capacity)){
-                        // Add an equal percentage of power to all buffers, based on the global power coverage in this graph
-                        float maximumRate = consumePower.requestedPower(consumer.entity) * coverage * consumer.entity.delta();
-                        consumer.entity.power.satisfaction = Mathf.clamp(consumer.entity.power.satisfaction + maximumRate / consumePower.capacity);
-                    }
-                }else{
-                    //valid consumers get power as usual
-                    if(otherConsumersAreValid(consumer, consumePower)){
-                        consumer.entity.power.satisfaction = coverage;
-                    }else{ //invalid consumers get an estimate, if they were to activate
-                        consumer.entity.power.satisfaction = Math.min(1, produced / (needed + consumePower.usage * consumer.entity.delta()));
-                        //just in case
-                        if(Float.isNaN(consumer.entity.power.satisfaction)){
-                            consumer.entity.power.satisfaction = 0f;
-                        }
-                    }
-                }
+        float coverage = coverage(needed, produced);
+        for(int i = 0; i < size; i++){
+            if((roles[i] & roleConsumer) != 0 && powers[i] != null){
+                request(i);
+                distribute(i, coverage, needed, produced);
             }
         }
     }
@@ -165,10 +159,18 @@ public class PowerGraph{
     public void update(){
         if(Core.graphics.getFrameId() == lastFrameUpdated){
             return;
-        }else if(!consumers.isEmpty() && consumers.first().isEnemyCheat()){
+        }
+
+        if(disconnected){
+            split();
+        }
+
+        if(consumers > 0 && tiles[0].isEnemyCheat()){
             //when cheating, just set satisfaction to 1
-            for(Tile tile : consumers){
-                tile.entity.power.satisfaction = 1f;
+            for(int i = 0; i < size; i++){
+                if((roles[i] & roleConsumer) != 0){
+                    setSatisfaction(i, 1f);
+                }
             }
 
             return;
@@ -176,50 +178,122 @@ public class PowerGraph{
 
         lastFrameUpdated = Core.graphics.getFrameId();
 
-        float powerNeeded = getPowerNeeded();
-        float powerProduced = getPowerProduced();
+        //sum up everything in one pass
+        float powerNeeded = 0f, powerProduced = 0f, stored = 0f, capacity = 0f;
+        for(int i = 0; i < size; i++){
+            byte role = roles[i];
+            if((role & roleProducer) != 0){
+                powerProduced += tiles[i].block().getPowerProduction(tiles[i]) * entities[i].delta();
+            }
+            if((role & roleConsumer) != 0 && powers[i] != null && request(i)){
+                powerNeeded += requested[i];
+            }
+            if((role & roleBattery) != 0){
+                float satisfaction = entities[i].power.satisfaction;
+                stored += satisfaction * capacities[i];
+                capacity += (1f - satisfaction) * capacities[i];
+            }
+        }
 
         lastPowerNeeded = powerNeeded;
         lastPowerProduced = powerProduced;
 
         powerBalance.addValue((powerProduced - powerNeeded) / Time.delta());
 
-        if(consumers.size == 0 && producers.size == 0 && batteries.size == 0){
+        if(consumers == 0 && producers == 0 && batteries == 0){
             return;
         }
 
+        float used = 0f, charged = 0f;
         if(!Mathf.isEqual(powerNeeded, powerProduced)){
-            if(powerNeeded > powerProduced){
-                powerProduced += useBatteries(powerNeeded - powerProduced);
-            }else if(powerProduced > powerNeeded){
-                powerProduced -= chargeBatteries(powerProduced - powerNeeded);
+            if(powerNeeded > powerProduced && !Mathf.isEqual(stored, 0f)){
+                used = Math.min(stored, powerNeeded - powerProduced);
+            }else if(powerProduced > powerNeeded && !Mathf.isEqual(capacity, 0f)){
+                charged = Math.min(powerProduced - powerNeeded, capacity);
             }
         }
 
-        distributePower(powerNeeded, powerProduced);
+        float drainPercent = used > 0f ? Math.min(1f, (powerNeeded - powerProduced) / stored) : 0f;
+        float chargePercent = charged > 0f ? Math.min((powerProduced - powerNeeded) / capacity, 1f) : 0f;
+        powerProduced += used - charged;
+        float coverage = coverage(powerNeeded, powerProduced);
+
+        //then hand out the power in another
+        for(int i = 0; i < size; i++){
+            byte role = roles[i];
+            if((role & roleBattery) != 0){
+                PowerModule power = entities[i].power;
+                if(used > 0f){
+                    setSatisfaction(i, power.satisfaction * (1f - drainPercent));
+                }else if(charged > 0f && capacities[i] > 0f){
+                    setSatisfaction(i, power.satisfaction + (1f - power.satisfaction) * chargePercent);
+                }
+            }
+            if((role & roleConsumer) != 0 && powers[i] != null){
+                distribute(i, coverage, powerNeeded, powerProduced);
+            }
+        }
     }
 
+    /** Merges all tiles of another graph into this one. The other graph is left empty. */
     public void add(PowerGraph graph){
-        for(Tile tile : graph.all){
-            add(tile);
+        if(graph == this) return;
+
+        ensureCapacity(size + graph.size);
+        System.arraycopy(graph.tiles, 0, tiles, size, graph.size);
+        System.arraycopy(graph.entities, 0, entities, size, graph.size);
+        System.arraycopy(graph.powers, 0, powers, size, graph.size);
+        System.arraycopy(graph.capacities, 0, capacities, size, graph.size);
+        System.arraycopy(graph.roles, 0, roles, size, graph.size);
+
+        for(int i = size; i < size + graph.size; i++){
+            entities[i].power.graph = this;
+            entities[i].power.graphIndex = i;
         }
+
+        size += graph.size;
+        disconnected |= graph.disconnected;
+        producers += graph.producers;
+        consumers += graph.consumers;
+        batteries += graph.batteries;
+        graph.clear();
     }
 
     public void add(Tile tile){
         if(tile.entity == null || tile.entity.power == null) return;
-        tile.entity.power.graph = this;
-        all.add(tile);
+        PowerModule power = tile.entity.power;
+        if(power.graph == this && indexOf(tile) != -1) return;
+
+        //a tile can only be part of a single graph
+        if(power.graph != null && power.graph != this){
+            power.graph.removeSingle(tile);
+        }
 
-        if(tile.block().outputsPower && tile.block().consumesPower && !tile.block().consumes.getPower().buffered){
-            producers.add(tile);
-            consumers.add(tile);
-        }else if(tile.block().outputsPower && tile.block().consumesPower){
-            batteries.add(tile);
-        }else if(tile.block().outputsPower){
-            producers.add(tile);
-        }else if(tile.block().consumesPower){
-            consumers.add(tile);
+        Block block = tile.block();
+        ConsumePower consume = block.consumes.hasPower() ? block.consumes.getPower() : null;
+        byte role = 0;
+
+        if(block.outputsPower && block.consumesPower && consume != null && !consume.buffered){
+            role = roleProducer | roleConsumer;
+        }else if(block.outputsPower && block.consumesPower){
+            //batteries without a power consumer have no capacity, so they are not treated as batteries
+            if(consume != null) role = roleBattery;
+        }else if(block.outputsPower){
+            role = roleProducer;
+        }else if(block.consumesPower){
+            role = roleConsumer;
         }
+
+        ensureCapacity(size + 1);
+        tiles[size] = tile;
+        entities[size] = tile.entity;
+        powers[size] = consume;
+        capacities[size] = consume == null ? 0f : consume.capacity;
+        roles[size] = role;
+        count(role, 1);
+
+        power.graph = this;
+        power.graphIndex = size++;
     }
 
     public void reflow(Tile tile){
@@ -238,49 +312,238 @@ public class PowerGraph{
         }
     }
 
+    /** Removes a single tile from the arrays, filling its slot with the last tile. */
     private void removeSingle(Tile tile){
-        all.remove(tile);
-        producers.remove(tile);
-        consumers.remove(tile);
-        batteries.remove(tile);
+        int index = indexOf(tile);
+        if(index == -1) return;
+
+        count(roles[index], -1);
+        entities[index].power.graphIndex = -1;
+
+        int last = --size;
+        if(index != last){
+            tiles[index] = tiles[last];
+            entities[index] = entities[last];
+            powers[index] = powers[last];
+            capacities[index] = capacities[last];
+            roles[index] = roles[last];
+            entities[index].power.graphIndex = index;
+        }
+
+        tiles[last] = null;
+        entities[last] = null;
+        powers[last] = null;
     }
 
+    /** Removes a tile from this graph. If this disconnects parts of the graph, they are split off on the next update. */
     public void remove(Tile tile){
         removeSingle(tile);
-        //begin by clearing the closed set
-        closedSet.clear();
 
-        //go through all the connections of this tile
+        //without an entity the connections of this tile are unknown
+        if(tile.entity == null){
+            disconnected = true;
+            return;
+        }
+
+        //removing a tile with a single connection can't split anything
+        int connections = 0;
         for(Tile other : tile.block().getPowerConnections(tile, outArray1)){
-            //a graph has already been assigned to this tile from a previous call, skip it
-            if(other.entity.power.graph != this) continue;
-
-            //create graph for this branch
-            PowerGraph graph = new PowerGraph();
-            graph.add(other);
-            //add to queue for BFS
-            queue.clear();
-            queue.addLast(other);
-            while(queue.size > 0){
-                //get child from queue
-                Tile child = queue.removeFirst();
-                //remove it from this graph
-                removeSingle(child);
-                //add it to the new branch graph
-                graph.add(child);
-                //go through connections
-                for(Tile next : child.block().getPowerConnections(child, outArray2)){
-                    //make sure it hasn't looped back, and that the new graph being assigned hasn't already been assigned
-                    //also skip closed tiles
-                    if(next != tile && next.entity.power.graph != graph && !closedSet.contains(next.pos())){
-                        queue.addLast(next);
-                        closedSet.add(next.pos());
-                    }
+            if(other.entity.power.graph == this && indexOf(other) != -1){
+                connections++;
+            }
+        }
+
+        if(connections > 1){
+            disconnected = true;
+        }
+    }
+
+    /** Checks this graph for disconnected parts on the next update. Call this after removing a link between two of its tiles. */
+    public void invalidate(){
+        disconnected = true;
+    }
+
+    /** Finds all connected parts of this graph. The largest part stays in this graph, and every other one is moved into a new graph. */
+    private void split(){
+        disconnected = false;
+        if(size <= 1) return;
+
+        if(parents.length < size){
+            parents = new int[Math.max(size, parents.length * 2)];
+            counts = new int[parents.length];
+        }
+
+        for(int i = 0; i < size; i++){
+            parents[i] = i;
+            counts[i] = 0;
+        }
+
+        for(int i = 0; i < size; i++){
+            for(Tile other : tiles[i].block().getPowerConnections(tiles[i], outArray1)){
+                if(other.entity.power.graph != this) continue;
+
+                int index = indexOf(other);
+                if(index != -1){
+                    union(i, index);
                 }
             }
-            //update the graph once so direct consumers without any connected producer lose their power
+        }
+
+        int largest = find(0);
+        for(int i = 0; i < size; i++){
+            int root = find(i);
+            if(++counts[root] > counts[largest]){
+                largest = root;
+            }
+        }
+
+        if(counts[largest] == size) return;
+
+        //collect the tiles first, as moving a tile changes the indices of others
+        outArray2.clear();
+        splitRoots.clear();
+        for(int i = 0; i < size; i++){
+            int root = find(i);
+            if(root != largest){
+                outArray2.add(tiles[i]);
+                splitRoots.add(root);
+            }
+        }
+
+        branches.clear();
+        for(int i = 0; i < outArray2.size; i++){
+            PowerGraph graph = branches.get(splitRoots.get(i));
+            if(graph == null){
+                branches.put(splitRoots.get(i), graph = new PowerGraph());
+            }
+            graph.add(outArray2.get(i));
+        }
+
+        //update the new graphs once so direct consumers without any connected producer lose their power
+        for(PowerGraph graph : branches.values()){
             graph.update();
         }
+        branches.clear();
+        outArray2.clear();
+    }
+
+    private int find(int i){
+        while(parents[i] != i){
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b){
+        int rootA = find(a), rootB = find(b);
+        if(rootA != rootB){
+            parents[rootA] = rootB;
+        }
+    }
+
+    /** @return index of this tile in the arrays, or -1 if it is not part of this graph. */
+    private int indexOf(Tile tile){
+        if(tile.entity != null && tile.entity.power != null){
+            int index = tile.entity.power.graphIndex;
+            return index >= 0 && index < size && tiles[index] == tile ? index : -1;
+        }
+
+        //the entity is already gone, so the index is not known
+        for(int i = 0; i < size; i++){
+            if(tiles[i] == tile) return i;
+        }
+        return -1;
+    }
+
+    private void clear(){
+        Arrays.fill(tiles, 0, size, null);
+        Arrays.fill(entities, 0, size, null);
+        Arrays.fill(powers, 0, size, null);
+        size = producers = consumers = batteries = 0;
+    }
+
+    private void count(byte role, int amount){
+        if((role & roleProducer) != 0) producers += amount;
+        if((role & roleConsumer) != 0) consumers += amount;
+        if((role & roleBattery) != 0) batteries += amount;
+    }
+
+    private void ensureCapacity(int capacity){
+        if(capacity <= tiles.length) return;
+
+        int length = Math.max(capacity, tiles.length * 2);
+        tiles = Arrays.copyOf(tiles, length);
+        entities = Arrays.copyOf(entities, length);
+        powers = Arrays.copyOf(powers, length);
+        capacities = Arrays.copyOf(capacities, length);
+        roles = Arrays.copyOf(roles, length);
+        requested = Arrays.copyOf(requested, length);
+        valid = Arrays.copyOf(valid, length);
+    }
+
+    /**
+     * Caches the requested power and validity of a consumer for this update.
+     * @return whether the power of this consumer counts towards the demand of the graph.
+     */
+    private boolean request(int i){
+        TileEntity entity = entities[i];
+        requested[i] = powers[i].requestedPower(entity) * entity.delta();
+        return valid[i] = otherConsumersAreValid(tiles[i], powers[i]);
+    }
+
+    private void distribute(int i, float coverage, float needed, float produced){
+        ConsumePower consumePower = powers[i];
+        PowerModule power = entities[i].power;
+
+        if(consumePower.buffered){
+            if(!Mathf.isZero(consumePower.capacity)){
+                // Add an equal percentage of power to all buffers, based on the global power coverage in this graph
+                setSatisfaction(i, Mathf.clamp(power.satisfaction + requested[i] * coverage / consumePower.capacity));
+            }
+        }else{
+            //valid consumers get power as usual
+            if(valid[i]){
+                setSatisfaction(i, coverage);
+            }else{ //invalid consumers get an estimate, if they were to activate
+                float satisfaction = Math.min(1, produced / (needed + consumePower.usage * entities[i].delta()));
+                //just in case
+                setSatisfaction(i, Float.isNaN(satisfaction) ? 0f : satisfaction);
+            }
+        }
+    }
+
+    /** Sets the satisfaction of an entity, notifying the world if it changed, since this also happens to sleeping entities. */
+    private void setSatisfaction(int i, float satisfaction){
+        PowerModule power = entities[i].power;
+        if(power.satisfaction != satisfaction){
+            power.satisfaction = satisfaction;
+            if(world != null) world.notifyDataChanged(tiles[i]);
+        }
+    }
+
+    private void drainBatteries(float percent){
+        for(int i = 0; i < size; i++){
+            if((roles[i] & roleBattery) != 0){
+                setSatisfaction(i, entities[i].power.satisfaction * (1f - percent));
+            }
+        }
+    }
+
+    private void chargeBatteries(float excess, float capacity){
+        //how much of the missing in each battery % is charged
+        float chargedPercent = Math.min(excess / capacity, 1f);
+        for(int i = 0; i < size; i++){
+            if((roles[i] & roleBattery) != 0 && capacities[i] > 0f){
+                PowerModule power = entities[i].power;
+                setSatisfaction(i, power.satisfaction + (1f - power.satisfaction) * chargedPercent);
+            }
+        }
+    }
+
+    private float coverage(float needed, float produced){
+        //distribute even if not needed. this is because some might be requiring power but not using it; it updates consumers
+        return Mathf.isZero(needed) && Mathf.isZero(produced) ? 0f : Mathf.isZero(needed) ? 1f : Math.min(1, produced / needed);
     }
 
     private boolean otherConsumersAreValid(Tile tile, Consume consumePower){
@@ -295,10 +558,10 @@ public class PowerGraph{
     @Override
     public String toString(){
         return "PowerGraph{" +
-        "producers=" + producers +
+        "tiles=" + Arrays.toString(Arrays.copyOf(tiles, size)) +
+        ", producers=" + producers +
         ", consumers=" + consumers +
         ", batteries=" + batteries +
-        ", all=" + all +
         ", lastFrameUpdated=" + lastFrameUpdated +
         ", graphID=" + graphID +
         '}';
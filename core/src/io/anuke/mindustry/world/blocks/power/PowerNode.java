@@ -54,6 +54,8 @@ public class PowerNode extends PowerBlock{
                 other.entity.power.links.add(tile.pos());
             }
         }
+        world.notifyDataChanged(tile);
+        world.notifyDataChanged(other);
 
         entity.power.graph.add(other.entity.power.graph);
     }
@@ -66,17 +68,12 @@ public class PowerNode extends PowerBlock{
 
         entity.power.links.removeValue(other.pos());
         other.entity.power.links.removeValue(tile.pos());
+        world.notifyDataChanged(tile);
+        world.notifyDataChanged(other);
 
-        PowerGraph newgraph = new PowerGraph();
-
-        //reflow from this point, covering all tiles on this side
-        newgraph.reflow(tile);
-
-        if(other.entity.power.graph != newgraph){
-            //create new graph for other end
-            PowerGraph og = new PowerGraph();
-            //reflow from other end
-            og.reflow(other);
+        //this may have been the only connection between both ends, which is checked on the next update of the graph
+        if(entity.power.graph == other.entity.power.graph){
+            entity.power.graph.invalidate();
         }
     }
 
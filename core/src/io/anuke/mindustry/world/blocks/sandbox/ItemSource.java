@@ -17,6 +17,7 @@ import io.anuke.mindustry.world.meta.BlockGroup;
 import java.io.*;
 
 import static io.anuke.mindustry.Vars.content;
+import static io.anuke.mindustry.Vars.world;
 
 public class ItemSource extends Block{
     private static Item lastItem;
@@ -36,6 +37,7 @@ public class ItemSource extends Block{
         if(entity != null){
             entity.outputItem = item;
         }
+        world.notifyDataChanged(tile);
     }
 
     @Override
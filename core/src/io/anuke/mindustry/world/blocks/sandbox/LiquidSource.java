@@ -20,6 +20,7 @@ import java.io.*;
 
 import static io.anuke.mindustry.Vars.content;
 import static io.anuke.mindustry.Vars.control;
+import static io.anuke.mindustry.Vars.world;
 
 public class LiquidSource extends Block{
     private static Liquid lastLiquid;
@@ -109,6 +110,7 @@ public class LiquidSource extends Block{
     public static void setLiquidSourceLiquid(Player player, Tile tile, Liquid liquid){
         LiquidSourceEntity entity = tile.entity();
         if(entity != null) entity.source = liquid;
+        world.notifyDataChanged(tile);
     }
 
     class LiquidSourceEntity extends TileEntity{
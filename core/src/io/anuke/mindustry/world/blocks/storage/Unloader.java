@@ -14,6 +14,7 @@ import io.anuke.mindustry.world.blocks.ItemSelection;
 import java.io.*;
 
 import static io.anuke.mindustry.Vars.content;
+import static io.anuke.mindustry.Vars.world;
 
 public class Unloader extends Block{
     protected float speed = 1f;
@@ -51,6 +52,7 @@ public class Unloader extends Block{
         SortedUnloaderEntity entity = tile.entity();
         entity.items.clear();
         entity.sortItem = item;
+        world.notifyDataChanged(tile);
     }
 
     @Override
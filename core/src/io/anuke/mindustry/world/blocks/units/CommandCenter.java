@@ -96,6 +96,7 @@ public class CommandCenter extends Block{
             if(center.block() instanceof CommandCenter){
                 CommandCenterEntity entity = center.entity();
                 entity.command = command;
+                world.notifyDataChanged(center);
             }
         }
 
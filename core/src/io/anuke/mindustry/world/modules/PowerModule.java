@@ -15,6 +15,8 @@ public class PowerModule extends BlockModule{
      */
     public float satisfaction = 0.0f;
     public PowerGraph graph = new PowerGraph();
+    /** Index of this tile in the arrays of its graph. Managed by {@link PowerGraph}. */
+    public int graphIndex = -1;
     public IntArray links = new IntArray();
 
     @Override
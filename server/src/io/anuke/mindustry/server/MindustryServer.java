@@ -3,6 +3,7 @@ package io.anuke.mindustry.server;
 import io.anuke.arc.*;
 import io.anuke.mindustry.*;
 import io.anuke.mindustry.core.*;
+import io.anuke.mindustry.io.*;
 
 import static io.anuke.mindustry.Vars.*;
 
@@ -28,4 +29,10 @@ public class MindustryServer implements ApplicationListener{
         Core.app.addListener(netServer = new NetServer());
         Core.app.addListener(new ServerControl(args));
     }
+
+    @Override
+    public void dispose(){
+        //saves are written on daemon threads, which would be stopped on exit
+        SaveIO.waitForSaves();
+    }
 }
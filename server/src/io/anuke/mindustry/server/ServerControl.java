@@ -203,8 +203,12 @@ public class ServerControl implements ApplicationListener{
 
         handler.register("exit", "Exit the server application.", arg -> {
             info("Shutting down server.");
-            Net.dispose();
-            Core.app.exit();
+            //runs after any save that was just started, and waits for it to be written
+            Core.app.post(() -> {
+                SaveIO.waitForSaves();
+                Net.dispose();
+                Core.app.exit();
+            });
         });
 
         handler.register("stop", "Stop hosting the server.", arg -> {
@@ -309,10 +313,24 @@ public class ServerControl implements ApplicationListener{
 
                 info("  &ly{0} FPS, {1} MB used.", (int)(60f / Time.delta()), Core.app.getJavaHeap() / 1024 / 1024);
 
+                for(Team team : Team.all){
+                    if(state.teams.isActive(team)){
+                        info("  &lyPathfinding for team {0}: {1} tiles in frontier, last converged in {2} ms.", team.name(), pathfinder.getFrontierSize(team), pathfinder.getConvergenceTime(team));
+                    }
+                }
+
+                info("  &ly{0} tile entities, {1} asleep.", tileGroup.size(), TileEntity.sleepingEntities());
+                info("  &lyTargeting: {0} queries and {1} sweeps last tick, {2} us per query.", targeting.getQueries(), targeting.getSweeps(), targeting.getAverageQueryTime());
+
                 if(playerGroup.size() > 0){
                     info("  &lyPlayers: {0}", playerGroup.size());
                     for(Player p : playerGroup.all()){
-                        info("    &y{0} / {1}", p.name, p.uuid);
+                        if(p.con != null){
+                            info("    &y{0} / {1} &lb({2} entities synced, {3} culled, {4} unchanged; {5} KB/s)", p.name, p.uuid,
+                                p.con.syncedEntities, p.con.skippedEntities, p.con.unchangedEntities, p.con.snapshotBytesPerSecond / 1024f);
+                        }else{
+                            info("    &y{0} / {1}", p.name, p.uuid);
+                        }
                     }
                 }else{
                     info("  &lyNo players connected.");
@@ -421,6 +439,61 @@ public class ServerControl implements ApplicationListener{
             info("Strict mode is now {0}.", netServer.admins.getStrict() ? "on" : "off");
         });
 
+        handler.register("syncculling", "[on/off] [margin] [far-interval]", "Configures culling of entity snapshots to each player's view.", arg -> {
+            if(arg.length == 0){
+                info("Snapshot culling is currently &lc{0}&lg, with a margin of &lc{1}&lg and a full snapshot every &lc{2}&lg snapshots.",
+                    Core.settings.getBool("syncculling") ? "on" : "off", Core.settings.getInt("syncmargin"), Core.settings.getInt("syncfarinterval"));
+                return;
+            }
+
+            if(arg.length > 1 && !Strings.canParseInt(arg[1]) || arg.length > 2 && (!Strings.canParseInt(arg[2]) || Strings.parseInt(arg[2]) <= 0)){
+                err("Margin and interval must be positive numbers.");
+                return;
+            }
+
+            boolean value = arg[0].equalsIgnoreCase("on");
+            Core.settings.put("syncculling", value);
+            if(arg.length > 1) Core.settings.put("syncmargin", Strings.parseInt(arg[1]));
+            if(arg.length > 2) Core.settings.put("syncfarinterval", Strings.parseInt(arg[2]));
+            Core.settings.save();
+            info("Snapshot culling is now &lc{0}&lg.", value ? "on" : "off");
+        });
+
+        handler.register("syncdelta", "<on/off>", "Disables or enables leaving unchanged entities out of snapshots.", arg -> {
+            boolean value = arg[0].equalsIgnoreCase("on");
+            Core.settings.put("syncdelta", value);
+            Core.settings.save();
+            info("Delta snapshots are now {0}.", value ? "on" : "off");
+        });
+
+        handler.register("batchinvokes", "[on/off] [compression on/off]", "Configures sending remote calls once per tick in a single packet.", arg -> {
+            if(arg.length == 0){
+                info("Remote call batching is currently &lc{0}&lg, with compression &lc{1}&lg.",
+                    Core.settings.getBool("batchinvokes") ? "on" : "off", Core.settings.getBool("batchcompress") ? "on" : "off");
+                return;
+            }
+
+            boolean value = arg[0].equalsIgnoreCase("on");
+            Core.settings.put("batchinvokes", value);
+            if(arg.length > 1) Core.settings.put("batchcompress", arg[1].equalsIgnoreCase("on"));
+            Core.settings.save();
+            info("Remote call batching is now &lc{0}&lg.", value ? "on" : "off");
+        });
+
+        handler.register("pathfinderthread", "<on/off>", "Disables or enables calculating unit paths on a separate thread.", arg -> {
+            boolean value = arg[0].equalsIgnoreCase("on");
+            Core.settings.put("pathfinderthread", value);
+            Core.settings.save();
+            info("Pathfinder thread is now {0}.", value ? "on" : "off");
+        });
+
+        handler.register("parallelupdate", "<on/off>", "Disables or enables updating parts of bullets and blocks on all cores.", arg -> {
+            boolean value = arg[0].equalsIgnoreCase("on");
+            Core.settings.put("parallelupdate", value);
+            Core.settings.save();
+            info("Parallel update is now {0}.", value ? "on" : "off");
+        });
+
         handler.register("socketinput", "[on/off]", "Disables or enables a local TCP socket at port "+commandSocketPort+" to recieve commands from other applications", arg -> {
             if(arg.length == 0){
                 info("Socket input is currently &lc{0}.", Core.settings.getBool("socket") ? "on" : "off");
@@ -646,8 +719,13 @@ public class ServerControl implements ApplicationListener{
 
             Core.app.post(() -> {
                 int slot = Strings.parseInt(arg[0]);
-                SaveIO.saveToSlot(slot);
-                info("Saved to slot {0}.", slot);
+                SaveIO.saveToSlotAsync(slot, error -> {
+                    if(error == null){
+                        info("Saved to slot {0}.", slot);
+                    }else{
+                        err("Failed to save to slot {0}: {1}", slot, error.getMessage());
+                    }
+                });
             });
         });
 
@@ -1,6 +1,7 @@
 import io.anuke.arc.ApplicationCore;
 import io.anuke.arc.Core;
 import io.anuke.arc.backends.headless.HeadlessApplication;
+import io.anuke.arc.files.FileHandle;
 import io.anuke.arc.math.geom.Point2;
 import io.anuke.arc.util.Log;
 import io.anuke.arc.util.Time;
@@ -8,18 +9,26 @@ import io.anuke.mindustry.Vars;
 import io.anuke.mindustry.content.*;
 import io.anuke.mindustry.core.GameState.State;
 import io.anuke.mindustry.core.*;
+import io.anuke.mindustry.entities.Entities;
 import io.anuke.mindustry.entities.traits.BuilderTrait.BuildRequest;
 import io.anuke.mindustry.entities.type.BaseUnit;
+import io.anuke.mindustry.entities.type.TileEntity;
 import io.anuke.mindustry.entities.type.base.*;
 import io.anuke.mindustry.game.Team;
-import io.anuke.mindustry.io.SaveIO;
+import io.anuke.mindustry.io.*;
+import io.anuke.mindustry.io.SaveIO.SaveException;
+import io.anuke.mindustry.io.versions.Save3;
 import io.anuke.mindustry.maps.Map;
 import io.anuke.mindustry.type.ContentType;
 import io.anuke.mindustry.type.Item;
 import io.anuke.mindustry.world.*;
 import io.anuke.mindustry.world.blocks.BlockPart;
+import io.anuke.mindustry.world.blocks.Floor;
 import org.junit.jupiter.api.*;
 
+import java.io.*;
+import java.util.Arrays;
+
 import static io.anuke.mindustry.Vars.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -197,6 +206,264 @@ public class ApplicationTests{
         SaveIO.saveToSlot(0);
     }
 
+    @Test
+    void asyncSave(){
+        world.loadMap(testMap);
+        GameTestFixture.spawnUnits(50);
+        world.tile(10, 10).setBlock(Blocks.conveyor, defaultTeam, 1);
+
+        SaveIO.saveToSlot(0);
+        SaveIO.saveToSlotAsync(1, null);
+
+        //changes after the save was started must not end up in it
+        world.tile(10, 10).setBlock(Blocks.air);
+        GameTestFixture.spawnUnits(10);
+        SaveIO.waitForSaves();
+
+        SaveIO.loadFromSlot(0);
+        Block[] blocks = new Block[world.width() * world.height()];
+        byte[] rotations = new byte[blocks.length];
+        for(int i = 0; i < blocks.length; i++){
+            Tile tile = world.rawTile(i % world.width(), i / world.width());
+            blocks[i] = tile.block();
+            rotations[i] = tile.rotation();
+        }
+        unitGroups[waveTeam.ordinal()].updateEvents();
+        int units = unitGroups[waveTeam.ordinal()].size();
+        assertEquals(50, units);
+
+        SaveIO.loadFromSlot(1);
+        assertEquals(blocks.length, world.width() * world.height());
+        for(int i = 0; i < blocks.length; i++){
+            Tile tile = world.rawTile(i % world.width(), i / world.width());
+            assertEquals(blocks[i], tile.block());
+            assertEquals(rotations[i], tile.rotation());
+        }
+        unitGroups[waveTeam.ordinal()].updateEvents();
+        assertEquals(units, unitGroups[waveTeam.ordinal()].size());
+        assertEquals(Blocks.conveyor, world.tile(10, 10).block());
+    }
+
+    @Test
+    void chunkedSave(){
+        Map map = maps.loadInternalMap("overgrowth");
+
+        //the bundled map is compressed as a whole
+        long begin = System.nanoTime();
+        SaveIO.load(map.file);
+        float legacyTime = (System.nanoTime() - begin) / 1000000f;
+
+        Block[] blocks = new Block[world.width() * world.height()];
+        Floor[] floors = new Floor[blocks.length];
+        for(int i = 0; i < blocks.length; i++){
+            Tile tile = world.rawTile(i % world.width(), i / world.width());
+            blocks[i] = tile.block();
+            floors[i] = tile.floor();
+        }
+
+        FileHandle file = Core.files.local("chunked-test.msav");
+        SaveIO.write(file);
+        //the header of chunked saves isn't compressed
+        assertArrayEquals(SaveIO.header, Arrays.copyOf(file.readBytes(), SaveIO.header.length));
+
+        resetWorld();
+        begin = System.nanoTime();
+        SaveIO.load(file);
+        float chunkedTime = (System.nanoTime() - begin) / 1000000f;
+        Log.info("Loading {0}: {1} ms compressed as a whole, {2} ms compressed in chunks.", map.name(), legacyTime, chunkedTime);
+
+        assertEquals(blocks.length, world.width() * world.height());
+        for(int i = 0; i < blocks.length; i++){
+            Tile tile = world.rawTile(i % world.width(), i / world.width());
+            assertEquals(blocks[i], tile.block());
+            assertEquals(floors[i], tile.floor());
+        }
+        file.delete();
+    }
+
+    @Test
+    void mappedLoad(){
+        int size = 500;
+        Tile[][] tiles = world.createTiles(size, size);
+        world.beginMapLoad();
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                Floor floor = (Floor)(x / 7 % 3 == 0 ? Blocks.stone : x / 7 % 3 == 1 ? Blocks.sand : Blocks.grass);
+                tiles[x][y] = new Tile(x, y, floor.id, (y % 11 == 0 ? Blocks.oreCopper.id : 0), (byte)0);
+            }
+        }
+        for(int x = 0; x < size; x += 3){
+            for(int y = 0; y < size; y += 5){
+                tiles[x][y].setBlock(Blocks.conveyor, Team.sharded, (x + y) % 4);
+            }
+        }
+        world.endMapLoad();
+        GameTestFixture.spawnUnits(50);
+
+        //give tile entities some state to save
+        for(int x = 0; x < size; x += 3){
+            for(int y = 0; y < size; y += 5){
+                Tile tile = world.tile(x, y), source = tile.getNearby((tile.rotation() + 2) % 4);
+                if(source != null && tile.block().acceptItem(Items.copper, tile, source)){
+                    tile.block().handleItem(Items.copper, tile, source);
+                }
+                tile.entity.health = 1 + (x * y) % (int)tile.block().health;
+            }
+        }
+
+        Block[] blocks = new Block[size * size];
+        Floor[] floors = new Floor[blocks.length], overlays = new Floor[blocks.length];
+        int[] rotations = new int[blocks.length], items = new int[blocks.length];
+        float[] health = new float[blocks.length];
+        for(int i = 0; i < blocks.length; i++){
+            Tile tile = world.rawTile(i % size, i / size);
+            blocks[i] = tile.block();
+            floors[i] = tile.floor();
+            overlays[i] = tile.overlay();
+            rotations[i] = tile.rotation();
+            if(tile.entity != null){
+                items[i] = tile.entity.items.total();
+                health[i] = tile.entity.health;
+            }
+        }
+
+        FileHandle compressed = Core.files.local("mapped-test-compressed.msav");
+        FileHandle uncompressed = Core.files.local("mapped-test.msav");
+        SaveIO.write(compressed);
+        SaveIO.write(uncompressed, null, false);
+
+        //compressed files are never mapped
+        resetWorld();
+        long begin = System.nanoTime();
+        assertFalse(SaveIO.loadMapped(compressed, world.context));
+        float compressedTime = (System.nanoTime() - begin) / 1000000f;
+
+        resetWorld();
+        begin = System.nanoTime();
+        assertTrue(SaveIO.loadMapped(uncompressed, world.context), "Uncompressed files must be mapped.");
+        float mappedTime = (System.nanoTime() - begin) / 1000000f;
+        Log.info("Loading a {0}x{0} map: {1} ms compressed, {2} ms uncompressed from memory.", size, compressedTime, mappedTime);
+
+        assertEquals(blocks.length, world.width() * world.height());
+        for(int i = 0; i < blocks.length; i++){
+            Tile tile = world.rawTile(i % size, i / size);
+            assertEquals(blocks[i], tile.block());
+            assertEquals(floors[i], tile.floor());
+            assertEquals(overlays[i], tile.overlay());
+            assertEquals(rotations[i], tile.rotation());
+            if(tile.entity != null){
+                assertEquals(items[i], tile.entity.items.total());
+                assertEquals(health[i], tile.entity.health);
+            }
+        }
+        unitGroups[waveTeam.ordinal()].updateEvents();
+        assertEquals(50, unitGroups[waveTeam.ordinal()].size());
+
+        //a copy made from the compressed file loads the same way
+        resetWorld();
+        FileHandle copy = Core.files.local("mapped-test-copy.msav");
+        try{
+            SaveIO.writeUncompressed(compressed, copy);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+        assertEquals(uncompressed.length(), copy.length());
+        assertTrue(SaveIO.loadMapped(copy, world.context));
+        assertEquals(blocks[0], world.rawTile(0, 0).block());
+        assertEquals(overlays[0], world.rawTile(0, 0).overlay());
+
+        compressed.delete();
+        uncompressed.delete();
+        copy.delete();
+    }
+
+    @Test
+    void regionOffsets() throws IOException{
+        FileHandle file = Core.files.local("region-test.msav");
+        SaveIO.write(file);
+
+        //every region read by its offset matches the same region read from the start of the file
+        try(DataInputStream stream = new DataInputStream(SaveIO.decompress(file.read(), false));
+            RandomAccessFile random = new RandomAccessFile(file.file(), "r")){
+            stream.readFully(new byte[SaveIO.header.length + 4]);
+            stream.readFully(new byte[stream.readInt()]);
+
+            for(String name : new String[]{"content", "map", "entities"}){
+                byte[] expected = new byte[stream.readInt()];
+                stream.readFully(expected);
+
+                byte[] actual = new byte[expected.length];
+                DataInputStream region = new DataInputStream(Save3.readRegion(random.getChannel(), name, false));
+                region.readFully(actual);
+                assertArrayEquals(expected, actual, name);
+                assertEquals(-1, region.read());
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    void saveIndex() throws IOException{
+        world.loadMap(testMap);
+        GameTestFixture.spawnUnits(50);
+        Block[] blocks = new Block[world.width() * world.height()];
+        for(int i = 0; i < blocks.length; i++){
+            blocks[i] = world.rawTile(i % world.width(), i / world.width()).block();
+        }
+
+        FileHandle file = Core.files.local("index-test.msav");
+        SaveIO.write(file);
+
+        //meta is read without reading the rest of the file
+        DataInputStream meta = SaveIO.openMeta(file);
+        assertTrue(meta.available() < file.length());
+        SaveIO.readHeader(meta);
+        SaveMeta saveMeta = SaveIO.getSaveWriter(meta.readInt()).getMeta(meta);
+        assertEquals(world.width(), saveMeta.tags.getInt("width"));
+
+        //find the entity region in the table, and cut it off
+        DataInputStream stream = new DataInputStream(file.read());
+        stream.skipBytes(SaveIO.header.length + 4);
+        stream.skipBytes(stream.readInt());
+        long entityOffset = -1;
+        int regions = stream.readUnsignedByte();
+        for(int i = 0; i < regions; i++){
+            String name = stream.readUTF();
+            stream.readInt();
+            long offset = stream.readLong();
+            if(name.equals("entities")) entityOffset = offset;
+        }
+        stream.close();
+        assertTrue(entityOffset > 0 && entityOffset < file.length());
+
+        FileHandle truncated = Core.files.local("index-test-truncated.msav");
+        truncated.writeBytes(Arrays.copyOf(file.readBytes(), (int)entityOffset), false);
+
+        //everything before the entities can still be read
+        resetWorld();
+        SaveVersion version = SaveIO.getVersion();
+        try(DataInputStream in = new DataInputStream(SaveIO.decompress(truncated.read(), false))){
+            SaveIO.readHeader(in);
+            assertEquals(version.version, in.readInt());
+            in.skipBytes(in.readInt());
+            in.readInt();
+            version.readContentHeader(in);
+            in.readInt();
+            version.readMap(in, world.context);
+        }finally{
+            content.setTemporaryMapper(null);
+        }
+
+        assertEquals(blocks.length, world.width() * world.height());
+        for(int i = 0; i < blocks.length; i++){
+            assertEquals(blocks[i], world.rawTile(i % world.width(), i / world.width()).block());
+        }
+        assertThrows(SaveException.class, () -> SaveIO.load(truncated));
+
+        file.delete();
+        truncated.delete();
+    }
+
     @Test
     void load(){
         world.loadMap(testMap);
@@ -330,6 +597,46 @@ public class ApplicationTests{
         }
     }
 
+    @Test
+    void sleepingConveyors(){
+        int length = 200;
+        Tile[][] tiles = world.createTiles(length + 10, 5);
+
+        world.beginMapLoad();
+        for(int x = 0; x < tiles.length; x++){
+            for(int y = 0; y < tiles[0].length; y++){
+                tiles[x][y] = new Tile(x, y, Blocks.stone.id, (byte)0, (byte)0);
+            }
+        }
+        for(int x = 0; x < length; x++){
+            tiles[x][2].setBlock(Blocks.conveyor);
+        }
+        world.endMapLoad();
+
+        //empty conveyors fall asleep, and are no longer updated
+        for(int i = 0; i < TileEntity.timeToSleep + 2; i++){
+            Time.update();
+            Entities.update(tileGroup, TileEntity.activeEntities());
+        }
+        assertEquals(length, TileEntity.sleepingEntities());
+        assertEquals(0, TileEntity.activeEntities().size);
+
+        //items wake up the conveyor at the end of the straight run they are put on, which moves the items of the whole run
+        Tile first = world.tile(0, 2);
+        Tile last = world.tile(length - 1, 2);
+        first.block().handleStack(Items.copper, 1, first, null);
+        assertTrue(TileEntity.activeEntities().contains(last.entity, true));
+        assertEquals(length - 1, TileEntity.sleepingEntities());
+
+        for(int i = 0; i < 60; i++){
+            Time.update();
+            Entities.update(tileGroup, TileEntity.activeEntities());
+        }
+        assertEquals(0, first.entity.items.total());
+        assertEquals(1, TileEntity.activeEntities().size);
+        assertEquals(length - 1, TileEntity.sleepingEntities());
+    }
+
     void initBuilding(){
         createMap();
 
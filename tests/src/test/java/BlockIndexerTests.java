@@ -0,0 +1,175 @@
+import io.anuke.arc.Core;
+import io.anuke.arc.Events;
+import io.anuke.arc.collection.*;
+import io.anuke.arc.function.Predicate;
+import io.anuke.arc.math.Mathf;
+import io.anuke.arc.util.Log;
+import io.anuke.mindustry.content.Blocks;
+import io.anuke.mindustry.entities.type.TileEntity;
+import io.anuke.mindustry.game.EventType.WorldLoadEvent;
+import io.anuke.mindustry.game.Team;
+import io.anuke.mindustry.type.Item;
+import io.anuke.mindustry.world.Tile;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.anuke.mindustry.Vars.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockIndexerTests extends GameTestFixture{
+
+    @Test
+    void findTileQueries() throws InterruptedException{
+        createDenseMap(300);
+
+        Random random = new Random(0);
+        int queries = 5000;
+        Predicate<Tile> any = tile -> true, turrets = tile -> tile.block() == Blocks.duo;
+
+        long indexed = 0, scanned = 0;
+        for(int i = 0; i < queries; i++){
+            Team team = random.nextBoolean() ? Team.sharded : Team.crux;
+            Predicate<Tile> pred = random.nextBoolean() ? any : turrets;
+            float x = random.nextFloat() * world.width() * tilesize, y = random.nextFloat() * world.height() * tilesize;
+            float range = 20f + random.nextFloat() * 220f;
+
+            long begin = System.nanoTime();
+            TileEntity result = indexer.findTile(team, x, y, range, pred);
+            indexed += System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            TileEntity expected = scan(team, x, y, range, pred);
+            scanned += System.nanoTime() - begin;
+
+            assertSameDistance(expected, result, x, y);
+        }
+
+        Log.info("findTile on a dense {0}x{1} map: {2} us per query, full scan: {3} us per query.",
+            world.width(), world.height(), indexed / queries / 1000f, scanned / queries / 1000f);
+
+        //tear down parts of the map, and make sure the index follows
+        for(int i = 0; i < 20000; i++){
+            Tile tile = world.tile(random.nextInt(world.width()), random.nextInt(world.height()));
+            if(random.nextBoolean()){
+                world.removeBlock(tile);
+            }else if(tile.block() == Blocks.air){
+                world.setBlock(tile, Blocks.copperWall, Team.crux);
+            }
+        }
+        flushEvents();
+
+        for(int i = 0; i < queries; i++){
+            Team team = random.nextBoolean() ? Team.sharded : Team.crux;
+            float x = random.nextFloat() * world.width() * tilesize, y = random.nextFloat() * world.height() * tilesize;
+            float range = 20f + random.nextFloat() * 220f;
+
+            assertSameDistance(scan(team, x, y, range, any), indexer.findTile(team, x, y, range, any), x, y);
+        }
+    }
+
+    @Test
+    void incrementalOres() throws InterruptedException{
+        world.loadMap(ApplicationTests.testMap);
+
+        Array<Item> items = Item.getAllOres();
+        Array<Tile> ores = new Array<>();
+        for(int x = 0; x < world.width(); x++){
+            for(int y = 0; y < world.height(); y++){
+                if(world.tile(x, y).drop() != null && world.tile(x, y).block() == Blocks.air) ores.add(world.tile(x, y));
+            }
+        }
+        assertTrue(ores.size > 0);
+
+        //cover most ores with buildings, then uncover some again
+        Random random = new Random(0);
+        float millis = time(() -> {
+            for(int i = 0; i < ores.size; i++){
+                if(random.nextFloat() < 0.8f) world.setBlock(ores.get(i), Blocks.copperWall, Team.sharded);
+            }
+            for(int i = 0; i < ores.size; i += 3){
+                world.removeBlock(ores.get(i));
+            }
+            flushEvents();
+        });
+        Log.info("Processed changes to {0} ore tiles in {1} ms.", ores.size, millis);
+
+        ObjectMap<Item, ObjectSet<Tile>> positions = new ObjectMap<>();
+        for(Item item : items){
+            positions.put(item, new ObjectSet<>(indexer.getOrePositions(item)));
+        }
+
+        //a full rescan must end up with the same quadrants
+        Events.fire(new WorldLoadEvent());
+        for(Item item : items){
+            ObjectSet<Tile> rescanned = indexer.getOrePositions(item);
+            assertEquals(rescanned.size, positions.get(item).size, "Ore quadrants of " + item + " must match a rescan.");
+            for(Tile tile : rescanned){
+                assertTrue(positions.get(item).contains(tile));
+            }
+        }
+    }
+
+    /** Fills almost every tile of a new map with walls and turrets of two teams. */
+    static void createDenseMap(int size){
+        Tile[][] tiles = world.createTiles(size, size);
+
+        world.beginMapLoad();
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                tiles[x][y] = new Tile(x, y);
+            }
+        }
+
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                if((x + y * 3) % 7 == 0) continue;
+
+                Team team = (x / 12 + y / 9) % 2 == 0 ? Team.sharded : Team.crux;
+                tiles[x][y].setBlock((x * 31 + y * 17) % 23 == 0 ? Blocks.duo : Blocks.copperWall, team);
+            }
+        }
+        world.endMapLoad();
+    }
+
+    /** The closest matching entity found by looking at every tile of the map. */
+    static TileEntity scan(Team team, float x, float y, float range, Predicate<Tile> pred){
+        TileEntity closest = null;
+        float dst = range;
+
+        for(int tx = 0; tx < world.width(); tx++){
+            for(int ty = 0; ty < world.height(); ty++){
+                Tile other = world.tile(tx, ty);
+                if(other.entity == null || other.getTeam() != team || !other.block().targetable || !pred.test(other)) continue;
+
+                float ndst = Mathf.dst(x, y, other.entity.x, other.entity.y);
+                if(ndst < dst){
+                    dst = ndst;
+                    closest = other.entity;
+                }
+            }
+        }
+
+        return closest;
+    }
+
+    static void assertSameDistance(TileEntity expected, TileEntity result, float x, float y){
+        if(expected == null){
+            assertNull(result);
+        }else{
+            assertNotNull(result);
+            //entities at the same distance may be found in a different order
+            assertEquals(Mathf.dst(x, y, expected.x, expected.y), Mathf.dst(x, y, result.x, result.y), 0.0001f);
+        }
+    }
+
+    /** Waits for tile change events, which are posted to the application thread. */
+    static void flushEvents() throws InterruptedException{
+        AtomicBoolean posted = new AtomicBoolean();
+        Core.app.post(() -> posted.set(true));
+        while(!posted.get()){
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.collection.IntArray;
+import io.anuke.arc.util.Log;
+import io.anuke.arc.util.Time;
+import io.anuke.mindustry.content.Blocks;
+import io.anuke.mindustry.content.Items;
+import io.anuke.mindustry.entities.Entities;
+import io.anuke.mindustry.entities.type.TileEntity;
+import io.anuke.mindustry.game.Team;
+import io.anuke.mindustry.world.Tile;
+import io.anuke.mindustry.world.blocks.distribution.Conveyor;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+
+import static io.anuke.mindustry.Vars.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConveyorTests extends GameTestFixture{
+
+    @Test
+    void conveyorNetwork(){
+        //items take about 1700 ticks to reach the end of a line
+        int lines = 200, length = 50, ticks = 3000;
+        createLines(lines, length);
+
+        int[] fed = new int[lines];
+        float seconds = time(() -> {
+            for(int i = 0; i < ticks; i++){
+                feed(lines, fed);
+                Time.update();
+                Entities.update(tileGroup, TileEntity.activeEntities());
+            }
+        }) / 1000f;
+
+        int delivered = 0;
+        for(int line = 0; line < lines; line++){
+            int lineDelivered = fed[line] - itemsOnLine(line, length);
+            assertTrue(lineDelivered > 0, "Items must reach the end of every line.");
+            delivered += lineDelivered;
+        }
+        Log.info("Conveyor network of {0} tiles: {1} items/sec, {2} items delivered in {3} ticks.", lines * length, delivered / seconds, delivered, ticks);
+
+        //a line is only awake at its end, since every line is one straight run
+        int awake = 0;
+        for(TileEntity entity : TileEntity.activeEntities()){
+            if(entity.block == Blocks.conveyor) awake++;
+        }
+        assertEquals(lines, awake);
+    }
+
+    @Test
+    void splitLine(){
+        int length = 40;
+        createLines(1, length);
+
+        int[] fed = new int[1];
+        for(int i = 0; i < 900; i++){
+            feed(1, fed);
+            Time.update();
+            Entities.update(tileGroup, TileEntity.activeEntities());
+        }
+
+        //splitting the line leaves the items of the first half stuck at its end, while the second half empties out
+        Tile gap = world.tile(1 + length / 2, 0);
+        Team team = gap.getTeam();
+        gap.setBlock(Blocks.air);
+        for(int i = 0; i < 1000; i++){
+            Time.update();
+            Entities.update(tileGroup, TileEntity.activeEntities());
+        }
+
+        assertTrue(world.tile(length / 2, 0).entity.items.total() > 0, "Items must pile up at the gap.");
+        for(int x = 2 + length / 2; x <= length; x++){
+            assertEquals(0, world.tile(x, 0).entity.items.total(), "Items after the gap must move on.");
+        }
+
+        //closing the gap again lets items flow through the whole line
+        gap.setBlock(Blocks.conveyor, team, 0);
+        int before = itemsOnLine(0, length);
+        for(int i = 0; i < 1000; i++){
+            Time.update();
+            Entities.update(tileGroup, TileEntity.activeEntities());
+        }
+        assertTrue(itemsOnLine(0, length) < before, "Items must reach the end of the line again.");
+    }
+
+    @Test
+    void segmentsMatchTileUpdates(){
+        //straight lines built from their source toward their destination, as most lines are;
+        //items take about 35 ticks to cross a conveyor, so the first items reach every conveyor before it falls asleep
+        int lines = 4, length = 6, ticks = 1200;
+        TestLines segmented = new TestLines(lines, length, 0, false), separate = new TestLines(lines, length, 0, false);
+        runSegmented(segmented, separate, ticks);
+
+        assertTrue(segmented.fed > segmented.items.get(599), "Items must reach the end of the lines.");
+        for(int i = 0; i < ticks; i++){
+            assertArrayEquals(separate.states.get(i), segmented.states.get(i), "Conveyors must match after tick " + i + ".");
+        }
+    }
+
+    @Test
+    void segmentsDivergeFromOtherUpdateOrders(){
+        //lines built from their destination toward their source, long enough for conveyors to fall asleep before items arrive
+        int lines = 4, length = 12, height = 6, ticks = 1600;
+        TestLines segmented = new TestLines(lines, length, height, true), separate = new TestLines(lines, length, height, true);
+        runSegmented(segmented, separate, ticks);
+
+        //every item crossing a conveyor can be one tick behind, which changes item counts by at most a few items per line
+        int maxDifference = 0;
+        for(int i = 0; i < ticks; i++){
+            maxDifference = Math.max(maxDifference, Math.abs(segmented.items.get(i) - separate.items.get(i)));
+        }
+        Log.info("Segments vs. conveyors updated downstream first: {0} vs. {1} items fed, at most {2} items apart.", segmented.fed, separate.fed, maxDifference);
+
+        assertTrue(maxDifference <= lines * 3, "Items on the network must stay within 3 per line, but were " + maxDifference + " apart.");
+        assertTrue(Math.abs(segmented.fed - separate.fed) <= lines * 2, "Throughput must stay within 2 items per line.");
+        assertEquals(0, segmented.items.peek(), "Every item must be delivered.");
+        assertEquals(0, separate.items.peek(), "Every item must be delivered.");
+    }
+
+    @Test
+    void sleepingConveyorsDie(){
+        int length = 20;
+        createLines(1, length);
+
+        //keep items moving until the whole line is asleep except for its end
+        int[] fed = new int[1];
+        for(int i = 0; i < (int)TileEntity.timeToSleep * 2; i++){
+            feed(1, fed);
+            Time.update();
+            Entities.update(tileGroup, TileEntity.activeEntities());
+        }
+        Tile member = world.tile(length / 2, 0);
+        assertTrue(member.entity.isSleeping());
+
+        member.entity.health = 0;
+        Time.update();
+        Entities.update(tileGroup, TileEntity.activeEntities());
+        assertEquals(Blocks.air, member.block(), "Conveyors updated by their segment must still be destroyed.");
+    }
+
+    /** Runs the same lines with and without segments. */
+    void runSegmented(TestLines segmented, TestLines separate, int ticks){
+        Conveyor conveyor = (Conveyor)Blocks.conveyor;
+        try{
+            segmented.run(ticks);
+            conveyor.segmented = false;
+            resetWorld();
+            separate.run(ticks);
+        }finally{
+            conveyor.segmented = true;
+        }
+    }
+
+    /**
+     * Lines of conveyors going right, turning up for a few conveyors at their end, and ending in an item void.
+     * Records every conveyor after each tick.
+     */
+    static class TestLines{
+        final int lines, length, height;
+        /** Whether to place conveyors from the end of each line to its start, instead of from its start to its end. */
+        final boolean downstreamFirst;
+
+        /** Saved state of every conveyor after each tick. */
+        final Array<byte[]> states = new Array<>();
+        /** Items on conveyors after each tick. */
+        final IntArray items = new IntArray();
+        int fed;
+
+        TestLines(int lines, int length, int height, boolean downstreamFirst){
+            this.lines = lines;
+            this.length = length;
+            this.height = height;
+            this.downstreamFirst = downstreamFirst;
+        }
+
+        void run(int ticks){
+            Tile[][] tiles = world.createTiles(length + 2, lines * (height + 2));
+
+            world.beginMapLoad();
+            for(int x = 0; x < tiles.length; x++){
+                for(int y = 0; y < tiles[0].length; y++){
+                    tiles[x][y] = new Tile(x, y, Blocks.stone.id, (byte)0, (byte)0);
+                }
+            }
+            for(int line = 0; line < lines; line++){
+                int base = line * (height + 2);
+                if(downstreamFirst){
+                    tiles[length + 1][base + height].setBlock(Blocks.itemVoid);
+                    for(int y = base + height - 1; y >= base; y--){
+                        tiles[length + 1][y].setBlock(Blocks.conveyor, Team.derelict, 1);
+                    }
+                    for(int x = length; x >= 1; x--){
+                        tiles[x][base].setBlock(Blocks.conveyor, Team.derelict, 0);
+                    }
+                }else{
+                    for(int x = 1; x <= length; x++){
+                        tiles[x][base].setBlock(Blocks.conveyor, Team.derelict, 0);
+                    }
+                    for(int y = base; y < base + height; y++){
+                        tiles[length + 1][y].setBlock(Blocks.conveyor, Team.derelict, 1);
+                    }
+                    tiles[length + 1][base + height].setBlock(Blocks.itemVoid);
+                }
+            }
+            world.endMapLoad();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream stream = new DataOutputStream(bytes);
+            for(int i = 0; i < ticks; i++){
+                //feed lines at different rates, so that some of them clog and others empty out and fall asleep
+                for(int line = 0; line < lines; line++){
+                    Tile source = world.tile(0, line * (height + 2)), start = world.tile(1, line * (height + 2));
+                    if(i < 600 && i % (line + 1) == 0 && start.block().acceptItem(Items.copper, start, source)){
+                        start.block().handleItem(Items.copper, start, source);
+                        fed++;
+                    }
+                }
+                Time.update();
+                Entities.update(tileGroup, TileEntity.activeEntities());
+
+                bytes.reset();
+                int total = 0;
+                try{
+                    for(int x = 0; x < tiles.length; x++){
+                        for(int y = 0; y < tiles[0].length; y++){
+                            Tile tile = world.tile(x, y);
+                            if(tile.block() == Blocks.conveyor){
+                                tile.entity.write(stream);
+                                total += tile.entity.items.total();
+                            }
+                        }
+                    }
+                }catch(IOException e){
+                    throw new RuntimeException(e);
+                }
+                states.add(bytes.toByteArray());
+                items.add(total);
+            }
+        }
+    }
+
+    /** Creates lines of conveyors going right, each ending in an item void. */
+    static void createLines(int lines, int length){
+        Tile[][] tiles = world.createTiles(length + 2, lines * 2);
+
+        world.beginMapLoad();
+        for(int x = 0; x < tiles.length; x++){
+            for(int y = 0; y < tiles[0].length; y++){
+                tiles[x][y] = new Tile(x, y, Blocks.stone.id, (byte)0, (byte)0);
+            }
+        }
+        for(int line = 0; line < lines; line++){
+            for(int x = 1; x <= length; x++){
+                tiles[x][line * 2].setBlock(Blocks.conveyor);
+            }
+            tiles[length + 1][line * 2].setBlock(Blocks.itemVoid);
+        }
+        world.endMapLoad();
+    }
+
+    static void feed(int lines, int[] fed){
+        for(int line = 0; line < lines; line++){
+            Tile source = world.tile(0, line * 2), start = world.tile(1, line * 2);
+            if(start.block().acceptItem(Items.copper, start, source)){
+                start.block().handleItem(Items.copper, start, source);
+                fed[line]++;
+            }
+        }
+    }
+
+    static int itemsOnLine(int line, int length){
+        int total = 0;
+        for(int x = 1; x <= length; x++){
+            total += world.tile(x, line * 2).entity.items.total();
+        }
+        return total;
+    }
+}
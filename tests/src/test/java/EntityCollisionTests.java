@@ -0,0 +1,126 @@
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.collection.ObjectSet;
+import io.anuke.arc.math.Mathf;
+import io.anuke.arc.math.geom.Rectangle;
+import io.anuke.arc.util.Log;
+import io.anuke.mindustry.entities.*;
+import io.anuke.mindustry.entities.bullet.Bullet;
+import io.anuke.mindustry.entities.traits.Entity;
+import io.anuke.mindustry.entities.traits.SolidTrait;
+import io.anuke.mindustry.entities.type.BaseUnit;
+import io.anuke.mindustry.entities.type.Unit;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+import static io.anuke.mindustry.Vars.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityCollisionTests extends GameTestFixture{
+
+    @Test
+    void broadphaseComparison(){
+        world.loadMap(ApplicationTests.testMap);
+        spawnBullets(5000);
+        spawnUnits(500);
+
+        int frames = 100, queries = 5000;
+        float size = 200f;
+
+        for(EntityGroup<?> group : new EntityGroup[]{bulletGroup, unitGroups[waveTeam.ordinal()]}){
+            Broadphase[] phases = {new QuadTreeBroadphase(), new SpatialHash(4)};
+            long[] updateTimes = new long[phases.length], queryTimes = new long[phases.length];
+            for(Broadphase phase : phases){
+                phase.resize(-finalWorldBounds, -finalWorldBounds, world.width() * tilesize + finalWorldBounds * 2, world.height() * tilesize + finalWorldBounds * 2);
+            }
+
+            for(int frame = 0; frame < frames; frame++){
+                //move everything a bit, like a frame of movement would
+                for(Entity entity : group.all()){
+                    SolidTrait solid = (SolidTrait)entity;
+                    solid.setX(solid.getX() + Mathf.range(2f));
+                    solid.setY(solid.getY() + Mathf.range(2f));
+                }
+
+                for(int i = 0; i < phases.length; i++){
+                    long begin = System.nanoTime();
+                    phases[i].update(group.all());
+                    updateTimes[i] += System.nanoTime() - begin;
+                }
+            }
+
+            Random random = new Random(0);
+            ObjectSet<SolidTrait> expected = new ObjectSet<>(), found = new ObjectSet<>();
+            for(int q = 0; q < queries; q++){
+                float x = random.nextFloat() * world.width() * tilesize, y = random.nextFloat() * world.height() * tilesize;
+
+                for(int i = 0; i < phases.length; i++){
+                    ObjectSet<SolidTrait> out = i == 0 ? expected : found;
+                    out.clear();
+
+                    long begin = System.nanoTime();
+                    phases[i].intersect(x, y, size, size, out::add);
+                    queryTimes[i] += System.nanoTime() - begin;
+                }
+
+                assertEquals(expected.size, found.size, "Spatial hash must find the same entities as the quadtree.");
+                for(SolidTrait entity : found){
+                    assertTrue(expected.contains(entity));
+                }
+            }
+
+            for(int i = 0; i < phases.length; i++){
+                Log.info("{0} with {1} entities: {2} us per update, {3} us per query.", phases[i].getClass().getSimpleName(),
+                    group.size(), updateTimes[i] / frames / 1000f, queryTimes[i] / queries / 1000f);
+            }
+        }
+    }
+
+    @Test
+    void fusedCollisions(){
+        world.loadMap(ApplicationTests.testMap);
+        spawnBullets(5000);
+        spawnUnits(500);
+
+        collisions.updatePhysics(bulletGroup);
+        collisions.updatePhysics(unitGroups[waveTeam.ordinal()]);
+
+        //find out which units should be hit, by testing every pair
+        Rectangle rect = new Rectangle(), other = new Rectangle();
+        ObjectSet<Unit> expected = new ObjectSet<>();
+        for(BaseUnit unit : unitGroups[waveTeam.ordinal()].all()){
+            unit.hitbox(rect);
+            for(Bullet bullet : bulletGroup.all()){
+                bullet.hitbox(other);
+                if(rect.overlaps(other) && bullet.collides(unit) && unit.collides(bullet)){
+                    expected.add(unit);
+                    break;
+                }
+            }
+        }
+
+        Array<EntityGroup<?>> targets = new Array<>();
+        for(EntityGroup<?> group : unitGroups){
+            if(!group.isEmpty()) targets.add(group);
+        }
+        targets.add(playerGroup);
+
+        float millis = time(() -> collisions.collideGroups(bulletGroup, targets));
+        Log.info("Collided {0} bullets with {1} units in {2} ms, {3} units hit.", bulletGroup.size(), unitGroups[waveTeam.ordinal()].size(),
+            millis, expected.size);
+
+        assertTrue(expected.size > 0);
+        for(BaseUnit unit : unitGroups[waveTeam.ordinal()].all()){
+            assertEquals(expected.contains(unit), unit.damaged(), "Only units overlapping a bullet must be hit.");
+        }
+
+        //time repeated passes, without checking the outcome
+        int frames = 60;
+        millis = time(() -> {
+            for(int i = 0; i < frames; i++){
+                collisions.collideGroups(bulletGroup, targets);
+            }
+        });
+        Log.info("Fused collision pass: {0} ms per frame.", millis / frames);
+    }
+}
@@ -0,0 +1,90 @@
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.util.Log;
+import io.anuke.mindustry.entities.EntityGroup;
+import io.anuke.mindustry.entities.bullet.Bullet;
+import io.anuke.mindustry.entities.impl.BaseEntity;
+import io.anuke.mindustry.entities.traits.Entity;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+import static io.anuke.mindustry.Vars.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityGroupTests extends GameTestFixture{
+
+    @Test
+    void bulletChurn(){
+        world.loadMap(ApplicationTests.testMap);
+        spawnBullets(5000);
+
+        Random random = new Random(0);
+        int frames = 200, churn = 500;
+        float millis = time(() -> {
+            for(int frame = 0; frame < frames; frame++){
+                for(int i = 0; i < churn; i++){
+                    bulletGroup.all().get(random.nextInt(bulletGroup.size())).remove();
+                }
+                spawnBullets(churn);
+            }
+        });
+        Log.info("Bullet group churn: {0} us per frame, removing and adding {1} of {2} bullets.",
+            millis * 1000f / frames, churn, bulletGroup.size());
+
+        assertEquals(5000, bulletGroup.size());
+        assertIndices(bulletGroup);
+
+        //removing the same entity twice must not free it twice
+        Bullet bullet = bulletGroup.all().first();
+        bulletGroup.remove(bullet);
+        bulletGroup.remove(bullet);
+        bulletGroup.updateEvents();
+        assertEquals(4999, bulletGroup.size());
+        assertEquals(-1, bullet.getGroupIndex());
+        assertIndices(bulletGroup);
+    }
+
+    @Test
+    void orderedRemoval(){
+        EntityGroup<TestEntity> group = new EntityGroup<>(TestEntity.class, false).enableOrdering();
+        Array<TestEntity> expected = new Array<>();
+        for(int i = 0; i < 1000; i++){
+            TestEntity entity = new TestEntity(group);
+            entity.add();
+            expected.add(entity);
+        }
+        group.updateEvents();
+
+        Random random = new Random(0);
+        for(int i = 0; i < 300; i++){
+            expected.remove(random.nextInt(expected.size)).remove();
+        }
+        group.updateEvents();
+
+        assertEquals(expected.size, group.size());
+        for(int i = 0; i < expected.size; i++){
+            assertSame(expected.get(i), group.all().get(i), "Ordered groups must keep the order entities were added in.");
+        }
+        assertIndices(group);
+    }
+
+    static void assertIndices(EntityGroup<?> group){
+        for(int i = 0; i < group.size(); i++){
+            Entity entity = group.all().get(i);
+            assertEquals(i, entity.getGroupIndex(), "Entities must know their index in the group.");
+        }
+    }
+
+    static class TestEntity extends BaseEntity{
+        final EntityGroup<TestEntity> group;
+
+        TestEntity(EntityGroup<TestEntity> group){
+            this.group = group;
+        }
+
+        @Override
+        public EntityGroup targetGroup(){
+            return group;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import io.anuke.arc.math.Mathf;
+import io.anuke.arc.util.Time;
+import io.anuke.mindustry.content.Bullets;
+import io.anuke.mindustry.content.UnitTypes;
+import io.anuke.mindustry.core.GameState.State;
+import io.anuke.mindustry.entities.bullet.Bullet;
+import io.anuke.mindustry.entities.type.BaseUnit;
+import io.anuke.mindustry.game.Team;
+import org.junit.jupiter.api.*;
+
+import static io.anuke.mindustry.Vars.*;
+
+/**
+ * Launches the application for tests that run the game, and provides objects commonly used by them.
+ * <p>
+ * Note: All tests which subclass this will run with a fixed delta of 1!
+ */
+public class GameTestFixture{
+
+    @BeforeAll
+    static void launchApplication(){
+        ApplicationTests.launchApplication();
+    }
+
+    @BeforeEach
+    void resetWorld(){
+        Time.setDeltaProvider(() -> 1f);
+        logic.reset();
+        state.set(State.menu);
+    }
+
+    /** @return how long running the task took, in milliseconds. */
+    static float time(Runnable task){
+        long begin = System.nanoTime();
+        task.run();
+        return (System.nanoTime() - begin) / 1000000f;
+    }
+
+    /** Spawns wave team daggers at random positions in the world. */
+    static void spawnUnits(int amount){
+        for(int i = 0; i < amount; i++){
+            BaseUnit unit = UnitTypes.dagger.create(waveTeam);
+            unit.set(Mathf.random(world.width() * tilesize), Mathf.random(world.height() * tilesize));
+            unit.add();
+        }
+        unitGroups[waveTeam.ordinal()].updateEvents();
+    }
+
+    /** Creates bullets at random positions in the world, flying in random directions. */
+    static void spawnBullets(int amount){
+        for(int i = 0; i < amount; i++){
+            Bullet.create(Bullets.standardCopper, null, Team.sharded, Mathf.random(world.width() * tilesize), Mathf.random(world.height() * tilesize), Mathf.random(360f));
+        }
+        bulletGroup.updateEvents();
+    }
+}
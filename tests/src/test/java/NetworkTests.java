@@ -0,0 +1,404 @@
+import io.anuke.arc.Core;
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.math.Mathf;
+import io.anuke.arc.util.Log;
+import io.anuke.arc.util.Time;
+import io.anuke.arc.util.io.FastDeflaterOutputStream;
+import io.anuke.mindustry.content.Blocks;
+import io.anuke.mindustry.content.Items;
+import io.anuke.mindustry.content.UnitTypes;
+import io.anuke.mindustry.entities.Entities;
+import io.anuke.mindustry.entities.type.BaseUnit;
+import io.anuke.mindustry.entities.type.Player;
+import io.anuke.mindustry.entities.type.TileEntity;
+import io.anuke.mindustry.game.Team;
+import io.anuke.mindustry.io.SaveIO;
+import io.anuke.mindustry.net.Interpolator;
+import io.anuke.mindustry.net.InvokeBatch;
+import io.anuke.mindustry.net.Net.SendMode;
+import io.anuke.mindustry.net.NetConnection;
+import io.anuke.mindustry.net.Packets.InvokeBatchPacket;
+import io.anuke.mindustry.net.Packets.InvokePacket;
+import io.anuke.mindustry.net.TileHealthSync;
+import io.anuke.mindustry.net.WorldStreamCache;
+import io.anuke.mindustry.world.Tile;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.InflaterInputStream;
+
+import static io.anuke.mindustry.Vars.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NetworkTests extends GameTestFixture{
+
+    @Test
+    void snapshotSyncTime() throws IOException{
+        world.loadMap(ApplicationTests.testMap);
+        spawnUnits(300);
+
+        int frames = 60;
+
+        for(int amount : new int[]{1, 10, 50}){
+            Array<Player> players = createPlayers(amount);
+
+            long begin = System.nanoTime();
+            for(int i = 0; i < frames; i++){
+                netServer.cacheSnapshots();
+                for(Player player : players){
+                    netServer.writeSnapshot(player);
+                }
+            }
+            long elapsed = System.nanoTime() - begin;
+
+            Log.info("Synced {0} connections in {1} ms per frame.", amount, elapsed / frames / 1000000f);
+            assertTrue(players.first().con.syncedEntities > 0);
+        }
+    }
+
+    @Test
+    void deltaSnapshots() throws IOException{
+        world.loadMap(ApplicationTests.testMap);
+        spawnUnits(50);
+
+        Player player = createPlayers(1).first();
+        player.con.viewX = world.width() * tilesize / 2f;
+        player.con.viewY = world.height() * tilesize / 2f;
+        player.con.viewWidth = world.width() * tilesize;
+        player.con.viewHeight = world.height() * tilesize;
+
+        //states need to be acknowledged twice before they stop being sent
+        for(int i = 0; i < 2; i++){
+            netServer.cacheSnapshots();
+            netServer.writeSnapshot(player);
+            assertEquals(50, player.con.syncedEntities);
+            player.con.baseline.acknowledge(player.con.baseline.lastPacket(), -1L);
+        }
+
+        netServer.cacheSnapshots();
+        netServer.writeSnapshot(player);
+        assertEquals(0, player.con.syncedEntities);
+        assertEquals(50, player.con.unchangedEntities);
+
+        BaseUnit moved = unitGroups[waveTeam.ordinal()].all().first();
+        moved.set(moved.x + tilesize, moved.y);
+
+        netServer.cacheSnapshots();
+        netServer.writeSnapshot(player);
+        assertEquals(1, player.con.syncedEntities);
+
+        //unacknowledged states are always sent again
+        netServer.cacheSnapshots();
+        netServer.writeSnapshot(player);
+        assertEquals(1, player.con.syncedEntities);
+    }
+
+    @Test
+    void snapshotCulling() throws IOException{
+        world.loadMap(ApplicationTests.testMap);
+
+        int interval = Core.settings.getInt("syncfarinterval");
+        float margin = Core.settings.getInt("syncmargin");
+        float viewSize = 160f;
+        float cx = world.width() * tilesize / 2f, cy = world.height() * tilesize / 2f;
+        float edge = viewSize / 2f + margin;
+
+        assertTrue(Core.settings.getBool("syncculling"));
+        assertTrue(interval > 1);
+        assertTrue(cx > edge + 128f && cy > edge + 128f, "map is too small to place units out of view");
+
+        //in view, inside the margin around the view, and past the margin
+        float[][] inside = {{cx, cy}, {cx - 40f, cy + 40f}, {cx + viewSize / 2f + margin / 2f, cy}, {cx, cy - viewSize / 2f - margin / 2f}};
+        float[][] outside = {{cx + edge + 64f, cy}, {cx - edge - 64f, cy}, {cx, cy + edge + 64f}, {cx + edge + 64f, cy - edge - 64f}, {cx - edge - 128f, cy - edge - 128f}};
+
+        for(float[][] positions : new float[][][]{inside, outside}){
+            for(float[] pos : positions){
+                BaseUnit unit = UnitTypes.dagger.create(waveTeam);
+                unit.set(pos[0], pos[1]);
+                unit.add();
+            }
+        }
+        unitGroups[waveTeam.ordinal()].updateEvents();
+        collisions.updatePhysics(unitGroups[waveTeam.ordinal()]);
+
+        Player player = createPlayers(1).first();
+        player.con.viewX = cx;
+        player.con.viewY = cy;
+        player.con.viewWidth = viewSize;
+        player.con.viewHeight = viewSize;
+
+        int total = inside.length + outside.length;
+
+        for(int i = 0; i < interval * 2 + 1; i++){
+            boolean full = player.con.snapshotsSent % interval == 0;
+
+            netServer.cacheSnapshots();
+            netServer.writeSnapshot(player);
+
+            //entities out of view are still sent every few snapshots
+            assertEquals(full ? total : inside.length, player.con.syncedEntities, "snapshot " + i);
+            assertEquals(full ? 0 : outside.length, player.con.skippedEntities, "snapshot " + i);
+            assertEquals(total, player.con.syncedEntities + player.con.skippedEntities);
+        }
+    }
+
+    @Test
+    void interpolatorHoldsStoppedEntities() throws InterruptedException{
+        Interpolator interpolator = new Interpolator();
+        interpolator.read(0f, 0f, 10f, 0f);
+        interpolator.update();
+        Thread.sleep(20);
+
+        //moving entities keep moving past their last state until the next one arrives
+        interpolator.read(interpolator.pos.x, interpolator.pos.y, 20f, 0f);
+        Thread.sleep(60);
+        interpolator.update();
+        assertTrue(interpolator.pos.x > 20f);
+
+        //once the same state arrives twice, the entity is held there, so it can stop being sent
+        interpolator.read(interpolator.pos.x, interpolator.pos.y, 20f, 0f);
+        Thread.sleep(60);
+        interpolator.update();
+        assertEquals(20f, interpolator.pos.x, 0.0001f);
+    }
+
+    @Test
+    void worldStreamTime() throws Exception{
+        world.loadMap(ApplicationTests.testMap);
+        Player player = createPlayers(1).first();
+        WorldStreamCache cache = new WorldStreamCache();
+        cache.reset();
+
+        //what used to happen on every join: encoding and compressing the whole map on the calling thread
+        long begin = System.nanoTime();
+        ByteArrayOutputStream uncached = new ByteArrayOutputStream();
+        try(DataOutputStream stream = new DataOutputStream(new FastDeflaterOutputStream(uncached))){
+            SaveIO.getSaveWriter().writeMap(stream);
+        }
+        float uncachedTime = (System.nanoTime() - begin) / 1000000f;
+
+        //first join encodes every chunk
+        cache.write(player, bytes -> {});
+
+        AtomicReference<byte[]> result = new AtomicReference<>();
+        begin = System.nanoTime();
+        cache.write(player, result::set);
+        float cachedTime = (System.nanoTime() - begin) / 1000000f;
+
+        Log.info("World data: {0} ms uncached, {1} ms on the calling thread when cached.", uncachedTime, cachedTime);
+
+        while(result.get() == null){
+            Thread.sleep(1);
+        }
+        assertWorldData(result.get());
+
+        //changes made in the same frame as a join must be sent, including tile entity state
+        Tile core = state.teams.get(defaultTeam).cores.first();
+        core.block().handleStack(Items.copper, 1234, core, null);
+        world.tile(10, 10).setBlock(Blocks.conveyor, defaultTeam, 3);
+        world.tile(10, 10).rotation(1);
+        world.tile(12, 10).setBlock(Blocks.air);
+
+        result.set(null);
+        cache.write(player, result::set);
+        while(result.get() == null){
+            Thread.sleep(1);
+        }
+        assertWorldData(result.get());
+    }
+
+    @Test
+    void worldStreamRunningBase() throws Exception{
+        //a base of busy conveyors in the first rows, and walls that never update in the rest of the map
+        int width = 200, height = 320, busyRows = 64;
+        Tile[][] tiles = world.createTiles(width, height);
+        world.beginMapLoad();
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                tiles[x][y] = new Tile(x, y, Blocks.stone.id, (byte)0, (byte)0);
+            }
+        }
+        for(int y = 0; y < busyRows; y += 2){
+            for(int x = 1; x < width - 1; x++){
+                tiles[x][y].setBlock(Blocks.conveyor, defaultTeam, 0);
+            }
+            tiles[width - 1][y].setBlock(Blocks.itemVoid);
+        }
+        for(int y = busyRows; y < height; y += 2){
+            for(int x = 0; x < width; x += 2){
+                tiles[x][y].setBlock(Blocks.copperWall, defaultTeam);
+            }
+        }
+        world.endMapLoad();
+
+        Player player = createPlayers(1).first();
+        WorldStreamCache cache = new WorldStreamCache();
+        cache.write(player, bytes -> {});
+
+        for(int i = 0; i < 300; i++){
+            for(int y = 0; y < busyRows; y += 2){
+                Tile source = world.tile(0, y), start = world.tile(1, y);
+                if(start.block().acceptItem(Items.copper, start, source)){
+                    start.block().handleItem(Items.copper, start, source);
+                }
+            }
+            Time.update();
+            Entities.update(tileGroup, TileEntity.activeEntities());
+        }
+
+        long begin = System.nanoTime();
+        ByteArrayOutputStream uncached = new ByteArrayOutputStream();
+        try(DataOutputStream stream = new DataOutputStream(new FastDeflaterOutputStream(uncached))){
+            SaveIO.getSaveWriter().writeMap(stream);
+        }
+        float uncachedTime = (System.nanoTime() - begin) / 1000000f;
+
+        //only the chunks with conveyors have changed since the last join
+        AtomicReference<byte[]> result = new AtomicReference<>();
+        begin = System.nanoTime();
+        cache.write(player, result::set);
+        float cachedTime = (System.nanoTime() - begin) / 1000000f;
+
+        Log.info("World data after 300 ticks of a running base: {0} ms uncached, {1} ms on the calling thread when cached.", uncachedTime, cachedTime);
+
+        while(result.get() == null){
+            Thread.sleep(1);
+        }
+        assertWorldData(result.get());
+    }
+
+    /** Asserts that the world data decodes to the current blocks and tile entity state, replacing the world. */
+    static void assertWorldData(byte[] data) throws IOException{
+        int size = world.width() * world.height();
+        short[] blocks = new short[size];
+        int[] rotations = new int[size], items = new int[size];
+        Team[] teams = new Team[size];
+        for(int i = 0; i < size; i++){
+            Tile tile = world.rawTile(i % world.width(), i / world.width());
+            blocks[i] = tile.blockID();
+            rotations[i] = tile.rotation();
+            teams[i] = tile.getTeam();
+            items[i] = tile.entity != null && tile.entity.items != null ? tile.entity.items.total() : 0;
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        input.skipBytes(input.readInt());
+        SaveIO.getSaveWriter().readMap(new DataInputStream(new InflaterInputStream(input)), world.context);
+
+        for(int i = 0; i < size; i++){
+            Tile tile = world.rawTile(i % world.width(), i / world.width());
+            assertEquals(blocks[i], tile.blockID());
+            assertEquals(rotations[i], tile.rotation());
+            assertEquals(teams[i], tile.getTeam());
+            assertEquals(items[i], tile.entity != null && tile.entity.items != null ? tile.entity.items.total() : 0);
+        }
+    }
+
+    @Test
+    void invokeBatching(){
+        InvokeBatch batch = new InvokeBatch();
+        Array<byte[]> sent = new Array<>();
+
+        for(int i = 0; i < 100; i++){
+            byte[] bytes = new byte[i % 20];
+            for(int j = 0; j < bytes.length; j++){
+                bytes[j] = (byte)(j % 4);
+            }
+
+            InvokePacket packet = new InvokePacket();
+            packet.type = (byte)i;
+            packet.writeBuffer = ByteBuffer.wrap(bytes);
+            packet.writeLength = bytes.length;
+
+            assertTrue(InvokeBatch.accepts(packet));
+            assertTrue(batch.fits(packet));
+            batch.add(packet);
+            sent.add(bytes);
+        }
+
+        InvokePacket important = new InvokePacket();
+        important.priority = 1;
+        important.writeLength = 0;
+        assertFalse(InvokeBatch.accepts(important));
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        InvokeBatchPacket packet = batch.build(true);
+        assertTrue(packet.compressed);
+        assertTrue(batch.isEmpty());
+        packet.write(buffer);
+        Log.info("Batched {0} invoke packets into {1} bytes.", sent.size, buffer.position());
+
+        buffer.position(0);
+        InvokeBatchPacket read = new InvokeBatchPacket();
+        read.read(buffer);
+
+        Array<InvokePacket> recieved = new Array<>();
+        InvokeBatch.read(read, recieved::add);
+
+        assertEquals(sent.size, recieved.size);
+        for(int i = 0; i < sent.size; i++){
+            assertEquals((byte)i, recieved.get(i).type);
+            assertArrayEquals(sent.get(i), recieved.get(i).writeBuffer.array());
+        }
+    }
+
+    @Test
+    void tileHealthCoalescing(){
+        world.loadMap(ApplicationTests.testMap);
+        Tile tile = world.tile(5, 5);
+        world.setBlock(tile, Blocks.copperWall, Team.sharded);
+
+        TileHealthSync sync = new TileHealthSync();
+        for(int i = 0; i < 20; i++){
+            tile.entity.damage(1f);
+            sync.mark(tile);
+        }
+
+        //twenty hits on the same tile are sent as a single entry
+        assertEquals(1, sync.size());
+        sync.flush();
+        assertEquals(0, sync.size());
+
+        float health = tile.entity.health;
+        ByteBuffer buffer = ByteBuffer.allocate(6);
+        buffer.putInt(tile.pos());
+        buffer.putShort((short)(health / tile.entity.maxHealth() * 65535));
+        tile.entity.health = tile.entity.maxHealth();
+
+        TileHealthSync.read(buffer.array());
+        assertEquals(health, tile.entity.health, tile.entity.maxHealth() / 65535f * 2f);
+    }
+
+    static Array<Player> createPlayers(int amount){
+        Array<Player> players = new Array<>();
+        for(int i = 0; i < amount; i++){
+            Player player = new Player();
+            player.con = new FakeConnection();
+            player.con.hasConnected = true;
+            player.con.viewX = Mathf.random(world.width() * tilesize);
+            player.con.viewY = Mathf.random(world.height() * tilesize);
+            player.con.viewWidth = player.con.viewHeight = 400f;
+            players.add(player);
+        }
+        return players;
+    }
+
+    static class FakeConnection extends NetConnection{
+
+        FakeConnection(){
+            super("127.0.0.1");
+        }
+
+        @Override
+        public void send(Object object, SendMode mode){
+
+        }
+
+        @Override
+        public void close(){
+
+        }
+    }
+}
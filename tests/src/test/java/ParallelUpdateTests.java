@@ -0,0 +1,101 @@
+import io.anuke.arc.Core;
+import io.anuke.arc.math.Mathf;
+import io.anuke.arc.util.Log;
+import io.anuke.arc.util.Time;
+import io.anuke.mindustry.content.Blocks;
+import io.anuke.mindustry.content.Items;
+import io.anuke.mindustry.core.GameState.State;
+import io.anuke.mindustry.entities.Entities;
+import io.anuke.mindustry.entities.impl.BaseEntity;
+import io.anuke.mindustry.entities.type.TileEntity;
+import io.anuke.mindustry.game.Team;
+import io.anuke.mindustry.io.SaveIO;
+import io.anuke.mindustry.world.Tile;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.lang.reflect.Field;
+
+import static io.anuke.mindustry.Vars.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelUpdateTests extends GameTestFixture{
+    /** Point in time every simulation starts at, so that timers behave the same. */
+    static final float startTime = 1 << 20;
+
+    @AfterEach
+    void resetParallel(){
+        Core.settings.put("parallelupdate", false);
+        Entities.setParallel(false);
+        Time.setDeltaProvider(() -> 1f);
+    }
+
+    @Test
+    void parallelMatchesSerial() throws IOException{
+        byte[] serial = simulate(false);
+        assertArrayEquals(serial, simulate(false), "Serial update must be deterministic.");
+
+        byte[] parallel = simulate(true);
+        assertArrayEquals(serial, parallel, "Parallel update must produce the same save as serial update.");
+    }
+
+    /** Runs a battle for a few seconds and returns the saved map and entities. */
+    static byte[] simulate(boolean parallel) throws IOException{
+        resetState();
+        world.loadMap(ApplicationTests.testMap);
+        state.set(State.playing);
+        Core.settings.put("parallelupdate", parallel);
+
+        //more turrets than a parallel task handles, so that they are split across the pool
+        int turrets = 20;
+        for(int x = 0; x < turrets; x++){
+            for(int y = 0; y < turrets; y++){
+                Tile tile = world.tile(world.width() / 2 - turrets / 2 + x, world.height() / 2 - turrets / 2 + y);
+                tile.setBlock(Blocks.duo, Team.sharded);
+                for(int i = 0; i < 10; i++){
+                    tile.block().handleItem(Items.copper, tile, tile);
+                }
+            }
+        }
+        spawnUnits(300);
+        spawnBullets(2000);
+        assertTrue(TileEntity.activeEntities().size > turrets * turrets, "Turrets must be updated.");
+
+        int frames = 180;
+        float millis = time(() -> {
+            for(int i = 0; i < frames; i++){
+                logic.update();
+            }
+        });
+        Log.info("{0} update: {1} ms per frame.", parallel ? "Parallel" : "Serial", millis / frames);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(out);
+        SaveIO.getSaveWriter().writeMap(stream);
+        SaveIO.getSaveWriter().writeEntities(stream);
+        return out.toByteArray();
+    }
+
+    /** Resets everything a simulation depends on besides the world: game time, entity IDs and random numbers. */
+    static void resetState(){
+        logic.reset();
+
+        //jumping to the start time may be off by a rounding error, which the next jump corrects
+        Time.setDeltaProvider(() -> startTime - Time.time());
+        for(int i = 0; i < 10 && Time.time() != startTime; i++){
+            Time.update();
+        }
+        Time.setDeltaProvider(() -> 1f);
+        assertEquals(startTime, Time.time(), "Time must be reset to compare simulations.");
+
+        try{
+            Field lastid = BaseEntity.class.getDeclaredField("lastid");
+            lastid.setAccessible(true);
+            lastid.setInt(null, 0);
+        }catch(ReflectiveOperationException e){
+            throw new RuntimeException(e);
+        }
+
+        Mathf.random.setSeed(0);
+    }
+}
@@ -0,0 +1,167 @@
+import io.anuke.arc.Core;
+import io.anuke.arc.Events;
+import io.anuke.arc.collection.IntArray;
+import io.anuke.arc.util.Log;
+import io.anuke.mindustry.ai.ChunkPathfinder;
+import io.anuke.mindustry.content.Blocks;
+import io.anuke.mindustry.game.EventType.WorldLoadEvent;
+import io.anuke.mindustry.game.Team;
+import io.anuke.mindustry.world.Pos;
+import io.anuke.mindustry.world.Tile;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.anuke.mindustry.Vars.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PathfinderTests extends GameTestFixture{
+
+    @Test
+    void incrementalRepair() throws InterruptedException{
+        world.loadMap(ApplicationTests.testMap);
+        assertEquals(0, pathfinder.getFrontierSize(waveTeam));
+
+        buildWalls();
+
+        long begin = System.nanoTime();
+        int frames = 0;
+        while(pathfinder.getFrontierSize(waveTeam) > 0){
+            pathfinder.update();
+            frames++;
+        }
+        float repairTime = (System.nanoTime() - begin) / 1000000f;
+
+        float[] repaired = values();
+
+        //rebuild the whole field, which is what used to happen on every change
+        begin = System.nanoTime();
+        Events.fire(new WorldLoadEvent());
+        float rebuildTime = (System.nanoTime() - begin) / 1000000f;
+
+        Log.info("Pathfinder repair: {0} ms over {1} frames, full rebuild: {2} ms.", repairTime, frames, rebuildTime);
+
+        assertArrayEquals(values(), repaired);
+    }
+
+    @Test
+    void threadedRepair() throws InterruptedException{
+        world.loadMap(ApplicationTests.testMap);
+        float[] initial = values();
+
+        pathfinder.setThreaded(true);
+        try{
+            assertArrayEquals(initial, values());
+
+            buildWalls();
+
+            long begin = System.nanoTime();
+            while(!pathfinder.isConverged(waveTeam)){
+                Thread.sleep(1);
+            }
+            Log.info("Threaded pathfinder repair: {0} ms.", (System.nanoTime() - begin) / 1000000f);
+
+            float[] repaired = values();
+            Events.fire(new WorldLoadEvent());
+            assertArrayEquals(values(), repaired);
+        }finally{
+            pathfinder.setThreaded(false);
+        }
+    }
+
+    @Test
+    void chunkPathQueries(){
+        int warmup = 200, queries = 2000;
+
+        for(String name : new String[]{"groundZero", "frozenForest", "craters", "fortress", "labyrinth", "maze"}){
+            world.loadMap(maps.loadInternalMap(name));
+
+            ChunkPathfinder chunkPathfinder = new ChunkPathfinder();
+            float buildTime = time(chunkPathfinder::buildAll);
+
+            Random random = new Random(0);
+            Tile[] starts = new Tile[warmup + queries], ends = new Tile[warmup + queries];
+            for(int i = 0; i < starts.length; i++){
+                starts[i] = randomPassable(random);
+                ends[i] = randomPassable(random);
+            }
+
+            IntArray path = new IntArray();
+            for(int i = 0; i < warmup; i++){
+                chunkPathfinder.findPath(starts[i], ends[i], path);
+            }
+
+            int found = 0;
+            long total = 0;
+            for(int i = warmup; i < starts.length; i++){
+                begin = System.nanoTime();
+                boolean result = chunkPathfinder.findPath(starts[i], ends[i], path);
+                total += System.nanoTime() - begin;
+
+                if(result){
+                    found++;
+                    assertValidPath(starts[i], ends[i], path);
+                }
+            }
+
+            Log.info("{0}: {1} portals built in {2} ms, {3} us per query, {4}/{5} paths found.",
+                name, chunkPathfinder.portalCount(), buildTime, total / queries / 1000f, found, queries);
+            assertTrue(found > 0);
+        }
+    }
+
+    static Tile randomPassable(Random random){
+        Tile tile;
+        do{
+            tile = world.tile(random.nextInt(world.width()), random.nextInt(world.height()));
+        }while(tile.solid() || tile.floor().drownTime > 0);
+        return tile;
+    }
+
+    static void assertValidPath(Tile start, Tile end, IntArray path){
+        int x = start.x, y = start.y;
+        for(int i = 0; i < path.size; i++){
+            int nx = Pos.x(path.get(i)), ny = Pos.y(path.get(i));
+            assertEquals(1, Math.abs(nx - x) + Math.abs(ny - y), "Path must consist of adjacent tiles.");
+            assertFalse(world.tile(nx, ny).solid(), "Path must not go through solid tiles.");
+            x = nx;
+            y = ny;
+        }
+        assertEquals(end.pos(), Pos.get(x, y));
+    }
+
+    /** Builds walls in random places, removes some of them again and waits for the resulting tile change events. */
+    static void buildWalls() throws InterruptedException{
+        Random random = new Random(0);
+        Tile[] walls = new Tile[200];
+        for(int i = 0; i < walls.length; i++){
+            Tile tile;
+            do{
+                tile = world.tile(random.nextInt(world.width()), random.nextInt(world.height()));
+            }while(tile.solid() || tile.block() != Blocks.air);
+
+            world.setBlock(tile, Blocks.copperWall, Team.sharded);
+            walls[i] = tile;
+        }
+
+        for(int i = 0; i < walls.length; i += 2){
+            world.removeBlock(walls[i]);
+        }
+
+        //tile change events are posted to the application thread
+        AtomicBoolean posted = new AtomicBoolean();
+        Core.app.post(() -> posted.set(true));
+        while(!posted.get()){
+            Thread.sleep(1);
+        }
+    }
+
+    static float[] values(){
+        float[] values = new float[world.width() * world.height()];
+        for(int i = 0; i < values.length; i++){
+            values[i] = pathfinder.getValueforTeam(waveTeam, i % world.width(), i / world.width());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,117 @@
+import io.anuke.arc.collection.IntArray;
+import io.anuke.arc.util.Log;
+import io.anuke.arc.util.Time;
+import io.anuke.mindustry.game.Scheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchedulerTests{
+
+    @Test
+    void runsAtDueTick(){
+        Scheduler scheduler = new Scheduler();
+        Random random = new Random(0);
+        int tasks = 20000, ticks = 300000;
+
+        int[] due = new int[tasks];
+        IntArray ran = new IntArray();
+        int[] tick = {0};
+
+        for(int i = 0; i < tasks; i++){
+            //mostly short delays, with some that go through every level of the wheel
+            int delay = i % 10 == 0 ? random.nextInt(ticks) : random.nextInt(100);
+            due[i] = Math.max(delay, 1);
+            scheduler.run(delay, i, id -> {
+                assertEquals(due[id], tick[0], "Task must run at its due tick.");
+                ran.add(id);
+            });
+        }
+        assertEquals(tasks, scheduler.size());
+
+        for(tick[0] = 1; tick[0] <= ticks; tick[0]++){
+            scheduler.update(1f);
+        }
+
+        assertEquals(tasks, ran.size);
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    void fractionalDeltas(){
+        Scheduler scheduler = new Scheduler();
+        boolean[] ran = {false};
+        scheduler.run(2.5f, () -> ran[0] = true);
+
+        //2.1 ticks have passed
+        for(int i = 0; i < 7; i++){
+            scheduler.update(0.3f);
+        }
+        assertFalse(ran[0]);
+
+        //3 ticks have passed, which covers the whole due tick
+        for(int i = 0; i < 3; i++){
+            scheduler.update(0.3f);
+        }
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    void reschedulesWhileRunning(){
+        Scheduler scheduler = new Scheduler();
+        int[] count = {0};
+        Runnable[] repeat = {null};
+        repeat[0] = () -> {
+            count[0]++;
+            scheduler.run(0f, repeat[0]);
+        };
+        scheduler.run(0f, repeat[0]);
+
+        for(int i = 0; i < 100; i++){
+            scheduler.update(1f);
+        }
+        assertEquals(100, count[0]);
+
+        scheduler.clear();
+        scheduler.update(1f);
+        assertEquals(100, count[0]);
+    }
+
+    @Test
+    void throughput(){
+        Scheduler scheduler = new Scheduler();
+        int[] count = {0};
+        int tasks = 100000, frames = 100;
+
+        long begin = System.nanoTime();
+        for(int frame = 0; frame < frames; frame++){
+            for(int i = 0; i < tasks / frames; i++){
+                scheduler.run(i % 60, count, c -> c[0]++);
+            }
+            scheduler.update(1f);
+        }
+        while(scheduler.size() > 0){
+            scheduler.update(1f);
+        }
+        Log.info("Scheduler: {0} tasks in {1} ms.", tasks, (System.nanoTime() - begin) / 1000000f);
+
+        Time.setDeltaProvider(() -> 1f);
+        Time.clear();
+        int[] timeCount = {0};
+        begin = System.nanoTime();
+        for(int frame = 0; frame < frames; frame++){
+            for(int i = 0; i < tasks / frames; i++){
+                Time.run(i % 60, () -> timeCount[0]++);
+            }
+            Time.update();
+        }
+        for(int i = 0; i < 60; i++){
+            Time.update();
+        }
+        Log.info("Time.run: {0} tasks in {1} ms.", tasks, (System.nanoTime() - begin) / 1000000f);
+
+        assertEquals(tasks, count[0]);
+    }
+}
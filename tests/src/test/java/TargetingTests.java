@@ -0,0 +1,125 @@
+import io.anuke.arc.function.Predicate;
+import io.anuke.arc.math.Mathf;
+import io.anuke.arc.util.Log;
+import io.anuke.mindustry.ai.Targeting;
+import io.anuke.mindustry.entities.Units;
+import io.anuke.mindustry.entities.type.Unit;
+import io.anuke.mindustry.game.Team;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+import static io.anuke.mindustry.Vars.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TargetingTests extends GameTestFixture{
+
+    @Test
+    void sharedSweeps(){
+        world.loadMap(ApplicationTests.testMap);
+        spawnUnits(1000);
+        collisions.updatePhysics(unitGroups[waveTeam.ordinal()]);
+
+        //a defense grid of turrets in the middle of the map
+        Random random = new Random(0);
+        int requesters = 2000;
+        float[] xs = new float[requesters], ys = new float[requesters], ranges = new float[requesters];
+        for(int i = 0; i < requesters; i++){
+            xs[i] = world.width() * tilesize / 4f + random.nextFloat() * world.width() * tilesize / 2f;
+            ys[i] = world.height() * tilesize / 4f + random.nextFloat() * world.height() * tilesize / 2f;
+            ranges[i] = 80f + random.nextInt(3) * 60f;
+        }
+        Predicate<Unit> pred = e -> !e.isDead() && !e.isFlying();
+
+        //every requester retargets once, in the tick it is due in
+        Unit[] shared = new Unit[requesters];
+        boolean[] queried = new boolean[requesters];
+        int queries = 0, sweeps = 0;
+        long time = 0;
+        for(int tick = 0; tick < Targeting.retargetInterval; tick++){
+            targeting.update(1f);
+            queries += targeting.getQueries();
+            sweeps += targeting.getSweeps();
+
+            long begin = System.nanoTime();
+            for(int i = 0; i < requesters; i++){
+                if(targeting.isDue(xs[i], ys[i])){
+                    assertFalse(queried[i], "Requesters must only be due once per interval.");
+                    queried[i] = true;
+                    shared[i] = targeting.closestEnemy(Team.sharded, xs[i], ys[i], ranges[i], pred);
+                }
+            }
+            time += System.nanoTime() - begin;
+        }
+        targeting.update(1f);
+        queries += targeting.getQueries();
+        sweeps += targeting.getSweeps();
+        float sharedTime = time / 1000000f;
+
+        Unit[] single = new Unit[requesters];
+        float singleTime = time(() -> {
+            for(int i = 0; i < requesters; i++){
+                single[i] = Units.closestEnemy(Team.sharded, xs[i], ys[i], ranges[i], pred);
+            }
+        });
+
+        Log.info("{0} staggered target queries with {1} sweeps: {2} ms, separate queries: {3} ms.", queries, sweeps, sharedTime, singleTime);
+
+        assertEquals(requesters, queries);
+        //requesters in the same region are due together, so most of them share a sweep
+        assertTrue(sweeps < requesters / 4, "Requesters in the same region must share sweeps.");
+        for(int i = 0; i < requesters; i++){
+            assertTrue(queried[i]);
+            if(single[i] == null){
+                assertNull(shared[i]);
+            }else{
+                assertNotNull(shared[i]);
+                assertEquals(Mathf.dst(xs[i], ys[i], single[i].x, single[i].y), Mathf.dst(xs[i], ys[i], shared[i].x, shared[i].y), 0.0001f);
+            }
+        }
+    }
+
+    @Test
+    void staggeredRetargeting(){
+        //one requester in each of a grid of regions
+        float regionSize = 16 * tilesize;
+        int grid = Targeting.retargetInterval;
+        int[] due = new int[Targeting.retargetInterval];
+        world.loadMap(ApplicationTests.testMap);
+
+        for(int tick = 0; tick < Targeting.retargetInterval; tick++){
+            targeting.update(1f);
+            for(int x = 0; x < grid; x++){
+                for(int y = 0; y < grid; y++){
+                    if(targeting.isDue((x + 0.5f) * regionSize, (y + 0.5f) * regionSize)) due[tick]++;
+                }
+            }
+        }
+
+        for(int count : due){
+            assertEquals(grid * grid / Targeting.retargetInterval, count, "Retargeting must be spread evenly over ticks.");
+        }
+    }
+
+    @Test
+    void retargetingFollowsDelta(){
+        float x = 100f, y = 100f;
+        world.loadMap(ApplicationTests.testMap);
+
+        //a fast client updates more often with a smaller delta, but retargets just as often
+        for(float delta : new float[]{0.25f, 0.4f, 1f, 2.5f}){
+            int due = 0, updates = Math.round(Targeting.retargetInterval * 10 / delta);
+            for(int i = 0; i < updates; i++){
+                targeting.update(delta);
+                if(targeting.isDue(x, y)) due++;
+            }
+            assertEquals(10, due, "Requesters must retarget once every " + Targeting.retargetInterval + " ticks, regardless of delta.");
+        }
+
+        //a lagging server never skips a retarget
+        for(int i = 0; i < 10; i++){
+            targeting.update(Targeting.retargetInterval * 1.5f);
+            assertTrue(targeting.isDue(x, y));
+        }
+    }
+}
@@ -3,6 +3,7 @@ package power;
 import io.anuke.arc.Core;
 import io.anuke.arc.math.Mathf;
 import io.anuke.arc.util.*;
+import io.anuke.mindustry.world.Block;
 import io.anuke.mindustry.world.Tile;
 import io.anuke.mindustry.world.blocks.power.PowerGenerator;
 import io.anuke.mindustry.world.blocks.power.PowerGraph;
@@ -11,6 +12,8 @@ import org.junit.jupiter.api.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.DynamicTest.dynamicTest;
 
 /**
@@ -138,5 +141,125 @@ public class PowerTests extends PowerTestFixture{
                 assertFalse(consumePower.valid(consumerTile.entity()));
             }
         }
+
+        /**
+         * Builds a graph with thousands of producers, consumers and batteries by merging smaller graphs, and measures how long updates take.
+         * Twice as much power is requested as is produced, so every consumer should end up at half satisfaction until half of them are removed.
+         */
+        @Test
+        void largeGraphThroughput(){
+            int chunks = 100, chunkSize = 30, updates = 2000;
+            Block producer = createFakeProducerBlock(2f), consumer = createFakeDirectConsumer(1f), battery = createFakeBattery(100f);
+
+            Tile[] consumers = new Tile[chunks * chunkSize * 2 / 3];
+            int consumerCount = 0;
+            PowerGraph powerGraph = new PowerGraph();
+
+            long begin = System.nanoTime();
+            for(int i = 0; i < chunks; i++){
+                PowerGraph chunk = new PowerGraph();
+                for(int j = 0; j < chunkSize; j++){
+                    int index = i * chunkSize + j;
+                    Tile tile;
+                    if(j % 6 == 0){
+                        tile = createFakeTile(index, 0, producer);
+                        tile.<PowerGenerator.GeneratorEntity>entity().productionEfficiency = 1f;
+                    }else if(j % 6 == 1){
+                        tile = createFakeTile(index, 0, battery);
+                    }else{
+                        tile = createFakeTile(index, 0, consumer);
+                        consumers[consumerCount++] = tile;
+                    }
+                    chunk.add(tile);
+                }
+                powerGraph.add(chunk);
+                assertEquals(0, chunk.size());
+            }
+            float buildTime = (System.nanoTime() - begin) / 1000000f;
+
+            assertEquals(chunks * chunkSize, powerGraph.size());
+
+            begin = System.nanoTime();
+            for(int i = 0; i < updates; i++){
+                powerGraph.update();
+            }
+            float updateTime = (System.nanoTime() - begin) / 1000000f;
+
+            Log.info("Power graph with {0} tiles: built in {1} ms, {2} us per update.", powerGraph.size(), buildTime, updateTime * 1000f / updates);
+
+            for(Tile tile : consumers){
+                assertEquals(0.5f, tile.entity.power.satisfaction, Mathf.FLOAT_ROUNDING_ERROR);
+                assertSame(powerGraph, tile.entity.power.graph);
+            }
+
+            //remove every other consumer, leaving as much demand as there is production
+            for(int i = 0; i < consumers.length; i += 2){
+                powerGraph.remove(consumers[i]);
+            }
+            powerGraph.update();
+
+            for(int i = 1; i < consumers.length; i += 2){
+                assertEquals(1f, consumers[i].entity.power.satisfaction, Mathf.FLOAT_ROUNDING_ERROR);
+            }
+        }
+
+        /**
+         * Removes a whole column and a single tile from a large grid in the same tick, and makes sure the graph is split in two on the next update.
+         * The graph is only checked for disconnected parts once, no matter how many tiles were removed.
+         */
+        @Test
+        void splitsAfterBatchedRemoval(){
+            int width = 70, height = 70;
+            Block producer = createFakeProducerBlock(1f);
+
+            Tile[][] tiles = new Tile[width][height];
+            for(int x = 0; x < width; x++){
+                for(int y = 0; y < height; y++){
+                    tiles[x][y] = createFakeTile(x, y, producer);
+                }
+            }
+
+            for(int x = 0; x < width; x++){
+                for(int y = 0; y < height; y++){
+                    Tile tile = tiles[x][y];
+                    if(x > 0) tile.entity.proximity().add(tiles[x - 1][y]);
+                    if(y > 0) tile.entity.proximity().add(tiles[x][y - 1]);
+                    if(x < width - 1) tile.entity.proximity().add(tiles[x + 1][y]);
+                    if(y < height - 1) tile.entity.proximity().add(tiles[x][y + 1]);
+                    tiles[0][0].entity.power.graph.add(tile);
+                }
+            }
+
+            PowerGraph powerGraph = tiles[0][0].entity.power.graph;
+            assertEquals(width * height, powerGraph.size());
+
+            long begin = System.nanoTime();
+            for(int y = 0; y < height; y++){
+                removeFakeTile(tiles[width / 2][y]);
+            }
+            removeFakeTile(tiles[5][5]);
+            powerGraph.update();
+            Log.info("Removed {0} tiles from a power graph of {1} in {2} ms.", height + 1, width * height, (System.nanoTime() - begin) / 1000000f);
+
+            PowerGraph left = tiles[0][0].entity.power.graph, right = tiles[width - 1][0].entity.power.graph;
+            assertNotSame(left, right);
+            assertEquals(width / 2 * height - 1, left.size());
+            assertEquals((width - width / 2 - 1) * height, right.size());
+
+            for(int x = 0; x < width; x++){
+                for(int y = 0; y < height; y++){
+                    if(x == width / 2 || (x == 5 && y == 5)) continue;
+                    assertSame(x < width / 2 ? left : right, tiles[x][y].entity.power.graph);
+                }
+            }
+        }
+
+        /** Removes a tile from its graph and from the proximity of its neighbours, in the same order as when a block is removed. */
+        void removeFakeTile(Tile tile){
+            tile.entity.power.graph.remove(tile);
+            for(Tile other : tile.entity.proximity()){
+                other.entity.proximity().removeValue(tile, true);
+            }
+        }
     }
 }